@@ -0,0 +1,200 @@
+package com.devebot.opflow;
+
+import com.rabbitmq.client.Channel;
+import com.rabbitmq.client.ShutdownListener;
+import com.rabbitmq.client.ShutdownSignalException;
+import java.io.IOException;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Coalesces the acks of a channel. The delivery tags are tracked in the order
+ * of the deliveries, the handlers may settle them in any order, and the longest
+ * settled prefix is acked with a single basicAck(tag, multiple=true) when it
+ * reaches the batch size or when the oldest pending ack has waited for the
+ * batch delay. The nacks are sent at once, one by one.
+ *
+ * @author drupalex
+ */
+class OpflowAckCoalescer implements ShutdownListener {
+    private final static Logger LOG = LoggerFactory.getLogger(OpflowAckCoalescer.class);
+
+    private final static byte PENDING = 0;
+    private final static byte ACKED = 1;
+    private final static byte NACKED = 2;
+
+    private final OpflowLogTracer logTracer;
+    private final String coalescerId;
+    private final Channel channel;
+    private final int batchSize;
+    private final long batchDelay;
+    private long[] tags = new long[64];
+    private byte[] states = new byte[64];
+    private int head = 0;
+    private int size = 0;
+    private int settled = 0;
+    private volatile long firstAckTime = 0;
+    private boolean scheduled = false;
+    private boolean closed = false;
+
+    private final OpflowTimeout.Timeoutable flushTask = new OpflowTimeout.Timeoutable() {
+        @Override
+        public long getTimeout() {
+            return batchDelay;
+        }
+
+        @Override
+        public long getTimestamp() {
+            // read without the lock, the monitor holds its own lock here
+            return firstAckTime;
+        }
+
+        @Override
+        public void raiseTimeout() {
+            synchronized (OpflowAckCoalescer.this) {
+                scheduled = false;
+            }
+            flush();
+        }
+    };
+
+    public OpflowAckCoalescer(OpflowLogTracer parentTracer, Channel channel, int batchSize, long batchDelay) {
+        this.coalescerId = OpflowUtil.getLogID();
+        this.logTracer = parentTracer.branch("ackCoalescerId", coalescerId);
+        this.channel = channel;
+        this.batchSize = Math.max(1, batchSize);
+        this.batchDelay = Math.max(1, batchDelay);
+        channel.addShutdownListener(this);
+    }
+
+    /**
+     * Tracks a delivery, must be invoked by the consumer thread in the order of
+     * the deliveries, before the message is handed over to its handler.
+     */
+    public synchronized void track(long deliveryTag) {
+        if (closed) return;
+        if (size == tags.length) grow();
+        int tail = (head + size) % tags.length;
+        tags[tail] = deliveryTag;
+        states[tail] = PENDING;
+        size++;
+    }
+
+    public void ack(long deliveryTag) throws IOException {
+        boolean full;
+        synchronized (this) {
+            if (!settle(deliveryTag, ACKED)) {
+                channel.basicAck(deliveryTag, false);
+                return;
+            }
+            if (firstAckTime == 0) firstAckTime = OpflowUtil.getCurrentTime();
+            full = countSettledPrefix() >= batchSize;
+            if (!full && !scheduled) {
+                scheduled = true;
+                OpflowTimeout.getSharedMonitor().add(coalescerId, flushTask);
+            }
+        }
+        if (full) flush();
+    }
+
+    public void nack(long deliveryTag, boolean requeue) throws IOException {
+        synchronized (this) {
+            settle(deliveryTag, NACKED);
+            channel.basicNack(deliveryTag, false, requeue);
+        }
+    }
+
+    /**
+     * Acks the settled prefix of the deliveries. The ack is sent with the lock
+     * held, so that two flushes can never reach the broker out of order.
+     */
+    public synchronized void flush() {
+        if (closed || !channel.isOpen()) return;
+        long lastAcked = -1;
+        int count = 0;
+        while (count < size && states[(head + count) % tags.length] != PENDING) {
+            int index = (head + count) % tags.length;
+            if (states[index] == ACKED) lastAcked = tags[index];
+            count++;
+        }
+        if (count == 0) return;
+        try {
+            if (lastAcked >= 0) {
+                // the nacked tags are not outstanding anymore, they are skipped by a multiple ack
+                channel.basicAck(lastAcked, true);
+            }
+        } catch (IOException | ShutdownSignalException exception) {
+            if (logTracer.ready(LOG, "error")) LOG.error(logTracer
+                    .put("deliveryTag", lastAcked)
+                    .put("exceptionClass", exception.getClass().getName())
+                    .put("exceptionMessage", exception.getMessage())
+                    .text("AckCoalescer[${ackCoalescerId}] - multiple ack of ${deliveryTag} has failed")
+                    .stringify());
+            return;
+        }
+        if (logTracer.ready(LOG, "trace")) LOG.trace(logTracer
+                .put("deliveryTag", lastAcked)
+                .put("count", count)
+                .text("AckCoalescer[${ackCoalescerId}] - ${count} deliveries are settled up to ${deliveryTag}")
+                .stringify());
+        head = (head + count) % tags.length;
+        size -= count;
+        settled -= count;
+        firstAckTime = 0;
+        if (settled > 0) {
+            firstAckTime = OpflowUtil.getCurrentTime();
+        } else if (scheduled) {
+            scheduled = false;
+            OpflowTimeout.getSharedMonitor().remove(coalescerId);
+        }
+    }
+
+    @Override
+    public void shutdownCompleted(ShutdownSignalException cause) {
+        synchronized (this) {
+            closed = true;
+            size = 0;
+            settled = 0;
+            if (scheduled) {
+                scheduled = false;
+                OpflowTimeout.getSharedMonitor().remove(coalescerId);
+            }
+        }
+    }
+
+    private boolean settle(long deliveryTag, byte state) {
+        int low = 0, high = size - 1;
+        while (low <= high) {
+            int mid = (low + high) >>> 1;
+            int index = (head + mid) % tags.length;
+            if (tags[index] < deliveryTag) {
+                low = mid + 1;
+            } else if (tags[index] > deliveryTag) {
+                high = mid - 1;
+            } else {
+                if (states[index] == PENDING) settled++;
+                states[index] = state;
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private int countSettledPrefix() {
+        int count = 0;
+        while (count < size && states[(head + count) % tags.length] != PENDING) count++;
+        return count;
+    }
+
+    private void grow() {
+        long[] newTags = new long[tags.length * 2];
+        byte[] newStates = new byte[tags.length * 2];
+        for (int i=0; i<size; i++) {
+            newTags[i] = tags[(head + i) % tags.length];
+            newStates[i] = states[(head + i) % tags.length];
+        }
+        tags = newTags;
+        states = newStates;
+        head = 0;
+    }
+}
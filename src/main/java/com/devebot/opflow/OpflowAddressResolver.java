@@ -0,0 +1,234 @@
+package com.devebot.opflow;
+
+import com.devebot.opflow.exception.OpflowBootstrapException;
+import com.rabbitmq.client.Address;
+import com.rabbitmq.client.AddressResolver;
+import com.rabbitmq.client.Connection;
+import com.rabbitmq.client.ConnectionFactory;
+import com.rabbitmq.client.Recoverable;
+import com.rabbitmq.client.RecoveryListener;
+import com.rabbitmq.client.ShutdownListener;
+import com.rabbitmq.client.ShutdownSignalException;
+import java.io.IOException;
+import java.net.InetAddress;
+import java.net.UnknownHostException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Spreads the connections of an engine over a list of brokers. The client
+ * shuffles the addresses it is given, so the resolver hands out a single
+ * address picked by the strategy among the healthy brokers. A broker whose
+ * connection has been lost is skipped for a cooldown period, so that the
+ * recovery moves to another broker at once instead of retrying the lost one.
+ *
+ * @author drupalex
+ */
+public class OpflowAddressResolver implements AddressResolver {
+    private final static Logger LOG = LoggerFactory.getLogger(OpflowAddressResolver.class);
+
+    public interface Strategy {
+        /**
+         * Returns the index of the chosen one among the candidate indexes.
+         */
+        public int select(List<Address> addresses, int[] candidates, int[] connections);
+    }
+
+    public static class RoundRobin implements Strategy {
+        private final AtomicInteger counter = new AtomicInteger();
+
+        @Override
+        public int select(List<Address> addresses, int[] candidates, int[] connections) {
+            return candidates[(counter.getAndIncrement() & Integer.MAX_VALUE) % candidates.length];
+        }
+    }
+
+    public static class LeastConnections implements Strategy {
+        @Override
+        public int select(List<Address> addresses, int[] candidates, int[] connections) {
+            int selected = candidates[0];
+            for (int index : candidates) {
+                if (connections[index] < connections[selected]) selected = index;
+            }
+            return selected;
+        }
+    }
+
+    public static class RandomChoice implements Strategy {
+        @Override
+        public int select(List<Address> addresses, int[] candidates, int[] connections) {
+            return candidates[ThreadLocalRandom.current().nextInt(candidates.length)];
+        }
+    }
+
+    private final OpflowLogTracer logTracer;
+    private final List<Address> addresses;
+    private final InetAddress[] inetAddresses;
+    private final Strategy strategy;
+    private final long cooldown;
+    // the port of the factory is only final once its SSL protocol is set up
+    private volatile int defaultPort = ConnectionFactory.DEFAULT_AMQP_PORT;
+    private final int[] connections;
+    private final long[] failedAt;
+    private final ThreadLocal<Integer> pinned = new ThreadLocal<>();
+
+    public OpflowAddressResolver(OpflowLogTracer parentTracer, String[] addresses, String strategyName, long cooldown)
+            throws OpflowBootstrapException {
+        this.logTracer = parentTracer.copy();
+        List<Address> list = new ArrayList<>();
+        for (String address : addresses) {
+            if (address != null && address.trim().length() > 0) {
+                list.add(Address.parseAddress(address.trim()));
+            }
+        }
+        if (list.isEmpty()) {
+            throw new OpflowBootstrapException("addresses must contain at least one host[:port]");
+        }
+        this.addresses = Collections.unmodifiableList(list);
+        this.inetAddresses = new InetAddress[list.size()];
+        for (int i=0; i<list.size(); i++) {
+            try {
+                inetAddresses[i] = InetAddress.getByName(list.get(i).getHost());
+            } catch (UnknownHostException exception) {
+                inetAddresses[i] = null;
+            }
+        }
+        this.strategy = newStrategy(strategyName);
+        this.cooldown = cooldown;
+        this.connections = new int[list.size()];
+        this.failedAt = new long[list.size()];
+    }
+
+    public static Strategy newStrategy(String name) throws OpflowBootstrapException {
+        if (name == null || "round-robin".equals(name)) return new RoundRobin();
+        if ("least-connections".equals(name)) return new LeastConnections();
+        if ("random".equals(name)) return new RandomChoice();
+        try {
+            return (Strategy) Class.forName(name).getDeclaredConstructor().newInstance();
+        } catch (ReflectiveOperationException | ClassCastException exception) {
+            throw new OpflowBootstrapException("Invalid addressStrategy: " + name, exception);
+        }
+    }
+
+    public List<Address> getAddressList() {
+        return addresses;
+    }
+
+    @Override
+    public List<Address> getAddresses() throws IOException {
+        Integer index = pinned.get();
+        if (index == null) index = select();
+        return Collections.singletonList(addresses.get(index));
+    }
+
+    /**
+     * Opens a connection, trying each broker once until one of them accepts it.
+     * The returned connection keeps this resolver for its automatic recovery.
+     */
+    public Connection newConnection(ConnectionFactory factory) throws IOException, TimeoutException {
+        defaultPort = factory.getPort();
+        Exception lastException = null;
+        for (int attempt=0; attempt<addresses.size(); attempt++) {
+            int index = select();
+            pinned.set(index);
+            try {
+                Connection connection = factory.newConnection(this);
+                attach(connection);
+                return connection;
+            } catch (IOException | TimeoutException exception) {
+                lastException = exception;
+                markFailed(index);
+                if (logTracer.ready(LOG, "warn")) LOG.warn(logTracer
+                        .put("address", addresses.get(index).toString())
+                        .put("exceptionClass", exception.getClass().getName())
+                        .put("exceptionMessage", exception.getMessage())
+                        .text("Engine[${engineId}] could not connect to ${address}, try the next broker")
+                        .stringify());
+            } finally {
+                pinned.remove();
+            }
+        }
+        if (lastException instanceof TimeoutException) throw (TimeoutException) lastException;
+        throw (IOException) lastException;
+    }
+
+    private void attach(final Connection connection) {
+        opened(connection);
+        connection.addShutdownListener(new ShutdownListener() {
+            @Override
+            public void shutdownCompleted(ShutdownSignalException cause) {
+                int index = indexOf(connection);
+                if (index < 0) return;
+                synchronized (OpflowAddressResolver.this) {
+                    if (connections[index] > 0) connections[index]--;
+                }
+                if (!cause.isInitiatedByApplication()) markFailed(index);
+            }
+        });
+        if (connection instanceof Recoverable) {
+            ((Recoverable) connection).addRecoveryListener(new RecoveryListener() {
+                @Override
+                public void handleRecovery(Recoverable recoverable) {
+                    opened(connection);
+                }
+
+                @Override
+                public void handleRecoveryStarted(Recoverable recoverable) {
+                }
+            });
+        }
+    }
+
+    private void opened(Connection connection) {
+        int index = indexOf(connection);
+        if (index < 0) return;
+        synchronized (this) {
+            connections[index]++;
+            failedAt[index] = 0;
+        }
+    }
+
+    private synchronized void markFailed(int index) {
+        failedAt[index] = OpflowUtil.getCurrentTime();
+    }
+
+    private synchronized int select() {
+        long now = OpflowUtil.getCurrentTime();
+        int healthy = 0;
+        for (int i=0; i<failedAt.length; i++) {
+            if (now - failedAt[i] > cooldown) healthy++;
+        }
+        int[] candidates;
+        if (healthy == 0) {
+            // all of the brokers have failed recently, give every one a chance
+            candidates = new int[failedAt.length];
+            for (int i=0; i<candidates.length; i++) candidates[i] = i;
+        } else {
+            candidates = new int[healthy];
+            int pos = 0;
+            for (int i=0; i<failedAt.length; i++) {
+                if (now - failedAt[i] > cooldown) candidates[pos++] = i;
+            }
+        }
+        return strategy.select(addresses, candidates, connections);
+    }
+
+    private int indexOf(Connection connection) {
+        InetAddress inetAddress = connection.getAddress();
+        int port = connection.getPort();
+        for (int i=0; i<addresses.size(); i++) {
+            Address address = addresses.get(i);
+            int addressPort = (address.getPort() > 0) ? address.getPort() : defaultPort;
+            if (addressPort != port) continue;
+            if (inetAddresses[i] != null && inetAddresses[i].equals(inetAddress)) return i;
+            if (inetAddress != null && address.getHost().equals(inetAddress.getHostName())) return i;
+        }
+        return -1;
+    }
+}
@@ -0,0 +1,603 @@
+package com.devebot.opflow;
+
+import com.devebot.opflow.exception.OpflowFailedConversionException;
+import java.lang.reflect.Array;
+import java.lang.reflect.Constructor;
+import java.lang.reflect.Field;
+import java.lang.reflect.GenericArrayType;
+import java.lang.reflect.Modifier;
+import java.lang.reflect.ParameterizedType;
+import java.lang.reflect.Type;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * A compact binary encoding of the method arguments and the return values.
+ * The layout is derived from the declared types only, nothing describes the
+ * values on the wire: the integers are zigzag varints, the strings are UTF-8
+ * with a varint length, the fields of a bean are written in the order of
+ * their names. The types which have no layout (Object, interfaces, type
+ * variables, the other java.* classes) are embedded as JSON strings.
+ *
+ * @author drupalex
+ */
+public class OpflowBinarytool {
+    public static final String FORMAT = "binary";
+
+    private static final Map<Type, Coder> CODERS = new ConcurrentHashMap<>();
+
+    /**
+     * The coders of a list of types, typically the parameters of a method.
+     */
+    public static class Schema {
+        private final Type[] types;
+        private final Coder[] coders;
+
+        Schema(Type[] types) {
+            this.types = types;
+            this.coders = new Coder[types.length];
+            for (int i=0; i<types.length; i++) {
+                this.coders[i] = getCoder(types[i]);
+            }
+        }
+
+        public Type[] getTypes() {
+            return types;
+        }
+
+        public byte[] toBytes(Object[] values) {
+            Output output = new Output();
+            for (int i=0; i<coders.length; i++) {
+                coders[i].write(output, (values != null && i < values.length) ? values[i] : null);
+            }
+            return output.toByteArray();
+        }
+
+        public Object[] toObjectArray(byte[] data) {
+            Input input = new Input(data);
+            Object[] values = new Object[coders.length];
+            for (int i=0; i<coders.length; i++) {
+                values[i] = coders[i].read(input);
+            }
+            return values;
+        }
+    }
+
+    public static Schema getSchema(Type ... types) {
+        return new Schema(types);
+    }
+
+    public static byte[] toBytes(Object value, Type type) {
+        Output output = new Output();
+        getCoder(type).write(output, value);
+        return output.toByteArray();
+    }
+
+    // the caller names T after the type it gives, as for Gson.fromJson(json, type)
+    @SuppressWarnings("unchecked")
+    public static <T> T toObject(byte[] data, Type type) {
+        return (T) getCoder(type).read(new Input(data));
+    }
+
+    private static Coder getCoder(Type type) {
+        Coder coder = CODERS.get(type);
+        if (coder == null) {
+            synchronized (CODERS) {
+                coder = CODERS.get(type);
+                if (coder == null) {
+                    coder = newCoder(type);
+                    CODERS.put(type, coder);
+                    // the fields are resolved after the registration, a bean may refer to its own type
+                    if (coder instanceof BeanCoder) ((BeanCoder) coder).resolve();
+                }
+            }
+        }
+        return coder;
+    }
+
+    private static Coder newCoder(Type type) {
+        if (type instanceof Class) {
+            Class<?> clazz = (Class<?>) type;
+            if (clazz == int.class) return new IntCoder(false);
+            if (clazz == Integer.class) return new IntCoder(true);
+            if (clazz == long.class) return new LongCoder(false);
+            if (clazz == Long.class) return new LongCoder(true);
+            if (clazz == short.class || clazz == Short.class) return new ShortCoder(clazz == Short.class);
+            if (clazz == byte.class || clazz == Byte.class) return new ByteCoder(clazz == Byte.class);
+            if (clazz == boolean.class || clazz == Boolean.class) return new BooleanCoder(clazz == Boolean.class);
+            if (clazz == double.class || clazz == Double.class) return new DoubleCoder(clazz == Double.class);
+            if (clazz == float.class || clazz == Float.class) return new FloatCoder(clazz == Float.class);
+            if (clazz == char.class || clazz == Character.class) return new CharCoder(clazz == Character.class);
+            if (clazz == String.class) return new StringCoder();
+            if (clazz == byte[].class) return new BytesCoder();
+            if (clazz.isEnum()) return new EnumCoder(clazz);
+            if (clazz.isArray()) return new ArrayCoder(clazz.getComponentType());
+            if (isBean(clazz)) return new BeanCoder(clazz);
+            return new JsonCoder(type);
+        }
+        if (type instanceof GenericArrayType) {
+            Type componentType = ((GenericArrayType) type).getGenericComponentType();
+            return new ArrayCoder(componentType);
+        }
+        if (type instanceof ParameterizedType) {
+            ParameterizedType parameterizedType = (ParameterizedType) type;
+            Class<?> rawType = (Class<?>) parameterizedType.getRawType();
+            Type[] arguments = parameterizedType.getActualTypeArguments();
+            if (rawType == List.class || rawType == Collection.class || rawType == ArrayList.class) {
+                return new CollectionCoder(arguments[0], false);
+            }
+            if (rawType == Set.class || rawType == LinkedHashSet.class) {
+                return new CollectionCoder(arguments[0], true);
+            }
+            if (rawType == Map.class || rawType == LinkedHashMap.class) {
+                return new MapCoder(arguments[0], arguments[1]);
+            }
+        }
+        return new JsonCoder(type);
+    }
+
+    private static boolean isBean(Class<?> clazz) {
+        if (clazz.isInterface() || clazz.isPrimitive() || Modifier.isAbstract(clazz.getModifiers())) return false;
+        if (clazz.getTypeParameters().length > 0) return false;
+        String name = clazz.getName();
+        if (name.startsWith("java.") || name.startsWith("javax.")) return false;
+        try {
+            clazz.getDeclaredConstructor();
+            return true;
+        } catch (NoSuchMethodException exception) {
+            return false;
+        }
+    }
+
+    private static class Output {
+        private byte[] buffer = new byte[64];
+        private int size = 0;
+
+        void ensure(int count) {
+            if (size + count > buffer.length) {
+                buffer = Arrays.copyOf(buffer, Math.max(buffer.length * 2, size + count));
+            }
+        }
+
+        void writeByte(int value) {
+            ensure(1);
+            buffer[size++] = (byte) value;
+        }
+
+        void writeBytes(byte[] bytes) {
+            ensure(bytes.length);
+            System.arraycopy(bytes, 0, buffer, size, bytes.length);
+            size += bytes.length;
+        }
+
+        void writeVarLong(long value) {
+            ensure(10);
+            while ((value & ~0x7FL) != 0) {
+                buffer[size++] = (byte) ((value & 0x7F) | 0x80);
+                value >>>= 7;
+            }
+            buffer[size++] = (byte) value;
+        }
+
+        void writeSignedLong(long value) {
+            writeVarLong((value << 1) ^ (value >> 63));
+        }
+
+        void writeFixed(long value, int count) {
+            ensure(count);
+            for (int i=0; i<count; i++) {
+                buffer[size++] = (byte) (value >>> (8 * i));
+            }
+        }
+
+        byte[] toByteArray() {
+            return Arrays.copyOf(buffer, size);
+        }
+    }
+
+    private static class Input {
+        private final byte[] buffer;
+        private int position = 0;
+
+        Input(byte[] buffer) {
+            this.buffer = (buffer != null) ? buffer : new byte[0];
+        }
+
+        int readByte() {
+            if (position >= buffer.length) {
+                throw new OpflowFailedConversionException("Unexpected end of the binary body");
+            }
+            return buffer[position++];
+        }
+
+        byte[] readBytes(int count) {
+            if (count < 0 || position + count > buffer.length) {
+                throw new OpflowFailedConversionException("Unexpected end of the binary body");
+            }
+            byte[] bytes = Arrays.copyOfRange(buffer, position, position + count);
+            position += count;
+            return bytes;
+        }
+
+        long readVarLong() {
+            long value = 0;
+            for (int shift = 0; shift < 64; shift += 7) {
+                int b = readByte();
+                value |= (long) (b & 0x7F) << shift;
+                if ((b & 0x80) == 0) return value;
+            }
+            throw new OpflowFailedConversionException("Malformed varint in the binary body");
+        }
+
+        long readSignedLong() {
+            long value = readVarLong();
+            return (value >>> 1) ^ -(value & 1);
+        }
+
+        long readFixed(int count) {
+            long value = 0;
+            for (int i=0; i<count; i++) {
+                value |= (long) (readByte() & 0xFF) << (8 * i);
+            }
+            return value;
+        }
+
+        /**
+         * Reads a length written as length+1, returns -1 for a null value.
+         */
+        int readLength() {
+            long length = readVarLong() - 1;
+            // every value takes one byte at least
+            if (length > buffer.length - position) {
+                throw new OpflowFailedConversionException("Invalid length in the binary body");
+            }
+            return (int) length;
+        }
+    }
+
+    private static abstract class Coder {
+        private final boolean nullable;
+
+        Coder(boolean nullable) {
+            this.nullable = nullable;
+        }
+
+        void write(Output output, Object value) {
+            if (nullable) {
+                if (value == null) {
+                    output.writeByte(0);
+                    return;
+                }
+                output.writeByte(1);
+            }
+            writeValue(output, value);
+        }
+
+        Object read(Input input) {
+            if (nullable && input.readByte() == 0) return null;
+            return readValue(input);
+        }
+
+        abstract void writeValue(Output output, Object value);
+
+        abstract Object readValue(Input input);
+    }
+
+    private static class IntCoder extends Coder {
+        IntCoder(boolean nullable) { super(nullable); }
+        void writeValue(Output output, Object value) { output.writeSignedLong(value == null ? 0 : (Integer) value); }
+        Object readValue(Input input) { return (int) input.readSignedLong(); }
+    }
+
+    private static class LongCoder extends Coder {
+        LongCoder(boolean nullable) { super(nullable); }
+        void writeValue(Output output, Object value) { output.writeSignedLong(value == null ? 0 : (Long) value); }
+        Object readValue(Input input) { return input.readSignedLong(); }
+    }
+
+    private static class ShortCoder extends Coder {
+        ShortCoder(boolean nullable) { super(nullable); }
+        void writeValue(Output output, Object value) { output.writeSignedLong(value == null ? 0 : (Short) value); }
+        Object readValue(Input input) { return (short) input.readSignedLong(); }
+    }
+
+    private static class ByteCoder extends Coder {
+        ByteCoder(boolean nullable) { super(nullable); }
+        void writeValue(Output output, Object value) { output.writeByte(value == null ? 0 : (Byte) value); }
+        Object readValue(Input input) { return (byte) input.readByte(); }
+    }
+
+    private static class BooleanCoder extends Coder {
+        BooleanCoder(boolean nullable) { super(nullable); }
+        void writeValue(Output output, Object value) { output.writeByte(Boolean.TRUE.equals(value) ? 1 : 0); }
+        Object readValue(Input input) { return input.readByte() != 0; }
+    }
+
+    private static class DoubleCoder extends Coder {
+        DoubleCoder(boolean nullable) { super(nullable); }
+        void writeValue(Output output, Object value) {
+            output.writeFixed(Double.doubleToLongBits(value == null ? 0 : (Double) value), 8);
+        }
+        Object readValue(Input input) { return Double.longBitsToDouble(input.readFixed(8)); }
+    }
+
+    private static class FloatCoder extends Coder {
+        FloatCoder(boolean nullable) { super(nullable); }
+        void writeValue(Output output, Object value) {
+            output.writeFixed(Float.floatToIntBits(value == null ? 0 : (Float) value), 4);
+        }
+        Object readValue(Input input) { return Float.intBitsToFloat((int) input.readFixed(4)); }
+    }
+
+    private static class CharCoder extends Coder {
+        CharCoder(boolean nullable) { super(nullable); }
+        void writeValue(Output output, Object value) { output.writeVarLong(value == null ? 0 : (Character) value); }
+        Object readValue(Input input) { return (char) input.readVarLong(); }
+    }
+
+    private static class StringCoder extends Coder {
+        StringCoder() { super(false); }
+        void writeValue(Output output, Object value) {
+            if (value == null) {
+                output.writeVarLong(0);
+                return;
+            }
+            byte[] bytes = ((String) value).getBytes(StandardCharsets.UTF_8);
+            output.writeVarLong(bytes.length + 1L);
+            output.writeBytes(bytes);
+        }
+        Object readValue(Input input) {
+            int length = input.readLength();
+            if (length < 0) return null;
+            return new String(input.readBytes(length), StandardCharsets.UTF_8);
+        }
+    }
+
+    private static class BytesCoder extends Coder {
+        BytesCoder() { super(false); }
+        void writeValue(Output output, Object value) {
+            if (value == null) {
+                output.writeVarLong(0);
+                return;
+            }
+            byte[] bytes = (byte[]) value;
+            output.writeVarLong(bytes.length + 1L);
+            output.writeBytes(bytes);
+        }
+        Object readValue(Input input) {
+            int length = input.readLength();
+            if (length < 0) return null;
+            return input.readBytes(length);
+        }
+    }
+
+    private static class EnumCoder extends Coder {
+        private final Object[] constants;
+        EnumCoder(Class<?> clazz) {
+            super(false);
+            this.constants = clazz.getEnumConstants();
+        }
+        void writeValue(Output output, Object value) {
+            output.writeVarLong(value == null ? 0 : ((Enum<?>) value).ordinal() + 1);
+        }
+        Object readValue(Input input) {
+            int index = (int) input.readVarLong() - 1;
+            if (index < 0) return null;
+            if (index >= constants.length) {
+                throw new OpflowFailedConversionException("Invalid enum ordinal in the binary body");
+            }
+            return constants[index];
+        }
+    }
+
+    private static class ArrayCoder extends Coder {
+        private final Class<?> componentClass;
+        private final Coder componentCoder;
+        ArrayCoder(Type componentType) {
+            super(false);
+            this.componentClass = getRawClass(componentType);
+            this.componentCoder = getCoder(componentType);
+        }
+        void writeValue(Output output, Object value) {
+            if (value == null) {
+                output.writeVarLong(0);
+                return;
+            }
+            int length = Array.getLength(value);
+            output.writeVarLong(length + 1L);
+            for (int i=0; i<length; i++) {
+                componentCoder.write(output, Array.get(value, i));
+            }
+        }
+        Object readValue(Input input) {
+            int length = input.readLength();
+            if (length < 0) return null;
+            Object array = Array.newInstance(componentClass, length);
+            for (int i=0; i<length; i++) {
+                Array.set(array, i, componentCoder.read(input));
+            }
+            return array;
+        }
+    }
+
+    private static class CollectionCoder extends Coder {
+        private final Coder elementCoder;
+        private final boolean distinct;
+        CollectionCoder(Type elementType, boolean distinct) {
+            super(false);
+            this.elementCoder = getCoder(boxed(elementType));
+            this.distinct = distinct;
+        }
+        void writeValue(Output output, Object value) {
+            if (value == null) {
+                output.writeVarLong(0);
+                return;
+            }
+            Collection<?> collection = (Collection<?>) value;
+            output.writeVarLong(collection.size() + 1L);
+            for (Object element : collection) {
+                elementCoder.write(output, element);
+            }
+        }
+        Object readValue(Input input) {
+            int size = input.readLength();
+            if (size < 0) return null;
+            Collection<Object> collection;
+            if (distinct) {
+                collection = new LinkedHashSet<>(size);
+            } else {
+                collection = new ArrayList<>(size);
+            }
+            for (int i=0; i<size; i++) {
+                collection.add(elementCoder.read(input));
+            }
+            return collection;
+        }
+    }
+
+    private static class MapCoder extends Coder {
+        private final Coder keyCoder;
+        private final Coder valueCoder;
+        MapCoder(Type keyType, Type valueType) {
+            super(false);
+            this.keyCoder = getCoder(boxed(keyType));
+            this.valueCoder = getCoder(boxed(valueType));
+        }
+        void writeValue(Output output, Object value) {
+            if (value == null) {
+                output.writeVarLong(0);
+                return;
+            }
+            Map<?, ?> map = (Map<?, ?>) value;
+            output.writeVarLong(map.size() + 1L);
+            for (Map.Entry<?, ?> entry : map.entrySet()) {
+                keyCoder.write(output, entry.getKey());
+                valueCoder.write(output, entry.getValue());
+            }
+        }
+        Object readValue(Input input) {
+            int size = input.readLength();
+            if (size < 0) return null;
+            Map<Object, Object> map = new LinkedHashMap<>();
+            for (int i=0; i<size; i++) {
+                Object key = keyCoder.read(input);
+                map.put(key, valueCoder.read(input));
+            }
+            return map;
+        }
+    }
+
+    private static class BeanCoder extends Coder {
+        private final Class<?> clazz;
+        private volatile Field[] fields;
+        private volatile Coder[] coders;
+        BeanCoder(Class<?> clazz) {
+            super(true);
+            this.clazz = clazz;
+        }
+        void resolve() {
+            List<Field> list = new ArrayList<>();
+            for (Class<?> current = clazz; current != null && current != Object.class; current = current.getSuperclass()) {
+                List<Field> declared = new ArrayList<>();
+                for (Field field : current.getDeclaredFields()) {
+                    int modifiers = field.getModifiers();
+                    if (Modifier.isStatic(modifiers) || Modifier.isTransient(modifiers) || field.isSynthetic()) continue;
+                    field.setAccessible(true);
+                    declared.add(field);
+                }
+                // the order of getDeclaredFields() is not specified, both ends sort the fields by name
+                Collections.sort(declared, new Comparator<Field>() {
+                    @Override
+                    public int compare(Field f1, Field f2) {
+                        return f1.getName().compareTo(f2.getName());
+                    }
+                });
+                list.addAll(0, declared);
+            }
+            Coder[] _coders = new Coder[list.size()];
+            for (int i=0; i<_coders.length; i++) {
+                _coders[i] = getCoder(list.get(i).getGenericType());
+            }
+            coders = _coders;
+            fields = list.toArray(new Field[list.size()]);
+        }
+        /**
+         * Another thread may see the coder while its fields are resolved, it
+         * waits for the end of the resolution.
+         */
+        Field[] getFields() {
+            Field[] _fields = fields;
+            if (_fields == null) {
+                synchronized (CODERS) {
+                    _fields = fields;
+                }
+            }
+            return _fields;
+        }
+        void writeValue(Output output, Object value) {
+            Field[] _fields = getFields();
+            try {
+                for (int i=0; i<_fields.length; i++) {
+                    coders[i].write(output, _fields[i].get(value));
+                }
+            } catch (IllegalAccessException exception) {
+                throw new OpflowFailedConversionException(exception);
+            }
+        }
+        Object readValue(Input input) {
+            try {
+                Constructor<?> constructor = clazz.getDeclaredConstructor();
+                constructor.setAccessible(true);
+                Object value = constructor.newInstance();
+                Field[] _fields = getFields();
+                for (int i=0; i<_fields.length; i++) {
+                    _fields[i].set(value, coders[i].read(input));
+                }
+                return value;
+            } catch (ReflectiveOperationException exception) {
+                throw new OpflowFailedConversionException(exception);
+            }
+        }
+    }
+
+    private static class JsonCoder extends Coder {
+        private final Type type;
+        JsonCoder(Type type) {
+            super(true);
+            this.type = type;
+        }
+        void writeValue(Output output, Object value) {
+            byte[] bytes = OpflowJsontool.toString(value, type).getBytes(StandardCharsets.UTF_8);
+            output.writeVarLong(bytes.length);
+            output.writeBytes(bytes);
+        }
+        Object readValue(Input input) {
+            int length = (int) input.readVarLong();
+            return OpflowJsontool.toObject(new String(input.readBytes(length), StandardCharsets.UTF_8), type);
+        }
+    }
+
+    private static Type boxed(Type type) {
+        if (type instanceof ParameterizedType || type instanceof Class) return type;
+        return Object.class;
+    }
+
+    private static Class<?> getRawClass(Type type) {
+        if (type instanceof Class) return (Class<?>) type;
+        if (type instanceof ParameterizedType) return (Class<?>) ((ParameterizedType) type).getRawType();
+        if (type instanceof GenericArrayType) {
+            return Array.newInstance(getRawClass(((GenericArrayType) type).getGenericComponentType()), 0).getClass();
+        }
+        return Object.class;
+    }
+}
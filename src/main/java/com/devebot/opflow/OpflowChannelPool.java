@@ -0,0 +1,241 @@
+package com.devebot.opflow;
+
+import com.rabbitmq.client.Channel;
+import com.rabbitmq.client.Connection;
+import com.rabbitmq.client.ShutdownListener;
+import com.rabbitmq.client.ShutdownSignalException;
+import io.prometheus.client.Counter;
+import io.prometheus.client.Gauge;
+import io.prometheus.client.Summary;
+import java.io.IOException;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import com.devebot.opflow.exception.OpflowOperationException;
+
+/**
+ * A bounded pool of channels spread over one or more connections. A caller
+ * leases a channel with acquire(), uses it exclusively and gives it back with
+ * release(), so that a channel is never used by two threads at the same time.
+ *
+ * @author drupalex
+ */
+class OpflowChannelPool implements AutoCloseable {
+    private final static Logger LOG = LoggerFactory.getLogger(OpflowChannelPool.class);
+
+    private final OpflowLogTracer logTracer;
+    private final String poolType;
+    private final Handler handler;
+    private final long waitTimeout;
+    private final Connection[] connections;
+    private final Slot[] slots;
+    private final BlockingQueue<Slot> idleSlots;
+    private final Gauge.Child idleGauge;
+    private final Summary.Child checkoutSummary;
+    private volatile boolean closed = false;
+
+    public interface Handler {
+        public Connection newConnection(int connectionIndex) throws IOException, TimeoutException;
+        public Object initChannel(Channel channel) throws IOException;
+    }
+
+    public OpflowChannelPool(OpflowLogTracer parentTracer, String engineId, String poolType,
+            int connectionTotal, int channelTotal, long waitTimeout, Handler handler) {
+        this.logTracer = parentTracer.branch("poolType", poolType);
+        this.poolType = poolType;
+        this.handler = handler;
+        this.waitTimeout = waitTimeout;
+        this.connections = new Connection[Math.max(1, connectionTotal)];
+        this.slots = new Slot[Math.max(1, channelTotal)];
+        this.idleSlots = new ArrayBlockingQueue<>(slots.length);
+
+        OpflowExporter exporter = OpflowExporter.getInstance();
+        for (int i=0; i<slots.length; i++) {
+            slots[i] = new Slot(i, i % connections.length, exporter.getChannelPublishCounter(engineId, poolType, i));
+            idleSlots.add(slots[i]);
+        }
+        exporter.setChannelPoolSize(engineId, poolType, slots.length);
+        this.idleGauge = exporter.getChannelPoolIdleGauge(engineId, poolType);
+        this.idleGauge.set(slots.length);
+        this.checkoutSummary = exporter.getChannelCheckoutSummary(engineId, poolType);
+
+        if (logTracer.ready(LOG, "info")) LOG.info(logTracer
+                .put("connectionTotal", connections.length)
+                .put("channelTotal", slots.length)
+                .put("waitTimeout", waitTimeout)
+                .text("Engine[${engineId}] ${poolType} pool has ${channelTotal} channel(s) over ${connectionTotal} connection(s)")
+                .stringify());
+    }
+
+    public Slot acquire() throws IOException, TimeoutException {
+        if (closed) {
+            throw new OpflowOperationException("The " + poolType + " channel pool has been closed");
+        }
+        long begin = System.nanoTime();
+        Slot slot;
+        try {
+            slot = idleSlots.poll(waitTimeout, TimeUnit.MILLISECONDS);
+        } catch (InterruptedException exception) {
+            Thread.currentThread().interrupt();
+            throw new OpflowOperationException("Interrupted while waiting for a " + poolType + " channel", exception);
+        }
+        if (slot == null) {
+            throw new TimeoutException("No " + poolType + " channel is available after " + waitTimeout + "ms");
+        }
+        idleGauge.dec();
+        checkoutSummary.observe((System.nanoTime() - begin) / 1.0e9);
+        try {
+            ensureChannel(slot);
+        } catch (IOException | TimeoutException | RuntimeException exception) {
+            release(slot);
+            throw exception;
+        }
+        return slot;
+    }
+
+    public void release(Slot slot) {
+        if (slot == null) return;
+        if (closed) {
+            closeChannel(slot);
+        }
+        idleSlots.offer(slot);
+        idleGauge.inc();
+    }
+
+    public void discard(Slot slot) {
+        if (slot == null) return;
+        closeChannel(slot);
+        release(slot);
+    }
+
+    public boolean isOpen() {
+        for (Connection connection : connections) {
+            if (connection != null && connection.isOpen()) return true;
+        }
+        return false;
+    }
+
+    public int getChannelTotal() {
+        return slots.length;
+    }
+
+    public int getConnectionTotal() {
+        return connections.length;
+    }
+
+    @Override
+    public void close() throws IOException, TimeoutException {
+        closed = true;
+        for (Slot slot : slots) {
+            closeChannel(slot);
+        }
+        synchronized (connections) {
+            for (int i=0; i<connections.length; i++) {
+                if (connections[i] != null && connections[i].isOpen()) {
+                    if (logTracer.ready(LOG, "info")) LOG.info(logTracer
+                            .put("connectionIndex", i)
+                            .text("Engine[${engineId}] ${poolType} connection[${connectionIndex}] is closing")
+                            .stringify());
+                    connections[i].close();
+                }
+                connections[i] = null;
+            }
+        }
+    }
+
+    private void ensureChannel(Slot slot) throws IOException, TimeoutException {
+        if (slot.channel != null && slot.channel.isOpen()) return;
+        Channel channel = getConnection(slot.connectionIndex).createChannel();
+        if (channel == null) {
+            throw new IOException("Could not create a " + poolType + " channel, channelMax has been reached");
+        }
+        Object attachment = handler.initChannel(channel);
+        final int channelNumber = channel.getChannelNumber();
+        channel.addShutdownListener(new ShutdownListener() {
+            private final OpflowLogTracer localLog = logTracer.copy();
+            @Override
+            public void shutdownCompleted(ShutdownSignalException sse) {
+                if (localLog.ready(LOG, "info")) LOG.info(localLog
+                        .put("channelNumber", channelNumber)
+                        .text("Engine[${engineId}] ${poolType} channel[${channelNumber}] has been shutdown")
+                        .stringify());
+            }
+        });
+        slot.channel = channel;
+        slot.attachment = attachment;
+        if (logTracer.ready(LOG, "info")) LOG.info(logTracer
+                .put("slotIndex", slot.index)
+                .put("channelNumber", channelNumber)
+                .text("Engine[${engineId}] ${poolType} channel[${channelNumber}] is created for slot[${slotIndex}]")
+                .stringify());
+    }
+
+    private Connection getConnection(int connectionIndex) throws IOException, TimeoutException {
+        synchronized (connections) {
+            Connection connection = connections[connectionIndex];
+            if (connection == null || !connection.isOpen()) {
+                if (closed) {
+                    throw new OpflowOperationException("The " + poolType + " channel pool has been closed");
+                }
+                if (connection != null) {
+                    // stop the automatic recovery of the stale connection, a new one replaces it
+                    connection.abort();
+                }
+                connection = handler.newConnection(connectionIndex);
+                connections[connectionIndex] = connection;
+            }
+            return connection;
+        }
+    }
+
+    private void closeChannel(Slot slot) {
+        Channel channel = slot.channel;
+        slot.channel = null;
+        slot.attachment = null;
+        if (channel != null && channel.isOpen()) {
+            try {
+                channel.close();
+            } catch (IOException | TimeoutException | ShutdownSignalException exception) {
+                if (logTracer.ready(LOG, "debug")) LOG.debug(logTracer
+                        .put("slotIndex", slot.index)
+                        .put("exceptionClass", exception.getClass().getName())
+                        .put("exceptionMessage", exception.getMessage())
+                        .text("Engine[${engineId}] ${poolType} channel of slot[${slotIndex}] could not be closed")
+                        .stringify());
+            }
+        }
+    }
+
+    public static class Slot {
+        private final int index;
+        private final int connectionIndex;
+        private final Counter.Child publishCounter;
+        private Channel channel;
+        private Object attachment;
+
+        Slot(int index, int connectionIndex, Counter.Child publishCounter) {
+            this.index = index;
+            this.connectionIndex = connectionIndex;
+            this.publishCounter = publishCounter;
+        }
+
+        public int getIndex() {
+            return index;
+        }
+
+        public Channel getChannel() {
+            return channel;
+        }
+
+        public Object getAttachment() {
+            return attachment;
+        }
+
+        public void countPublish(int total) {
+            publishCounter.inc(total);
+        }
+    }
+}
@@ -0,0 +1,182 @@
+package com.devebot.opflow;
+
+import com.devebot.opflow.exception.OpflowBootstrapException;
+import com.rabbitmq.client.AMQP;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.GZIPOutputStream;
+import net.jpountz.lz4.LZ4Compressor;
+import net.jpountz.lz4.LZ4Exception;
+import net.jpountz.lz4.LZ4Factory;
+
+/**
+ * Compresses the message bodies. The name of the codec is carried by the
+ * contentEncoding property, so that the engine decodes every delivery before
+ * it reaches the listeners, whatever the codec of the producer. The decoded
+ * bodies are bounded (DEFAULT_MAX_LENGTH unless a codec is registered with
+ * another limit), a small body must not expand into an unbounded buffer.
+ *
+ * @author drupalex
+ */
+public abstract class OpflowCodec {
+    public final static int DEFAULT_MAX_LENGTH = 128 * 1024 * 1024;
+    private final static Map<String, OpflowCodec> CODECS = new ConcurrentHashMap<>();
+
+    static {
+        register(new Gzip());
+        register(new Lz4());
+    }
+
+    public abstract String getName();
+
+    public abstract byte[] encode(byte[] data) throws IOException;
+
+    public abstract byte[] decode(byte[] data) throws IOException;
+
+    public static void register(OpflowCodec codec) {
+        CODECS.put(codec.getName(), codec);
+    }
+
+    /**
+     * Returns the registered codec or loads the codec class of this name.
+     */
+    public static OpflowCodec getCodec(String name) throws OpflowBootstrapException {
+        if (name == null || name.length() == 0 || "identity".equals(name)) return null;
+        OpflowCodec codec = CODECS.get(name);
+        if (codec != null) return codec;
+        try {
+            codec = (OpflowCodec) Class.forName(name).getDeclaredConstructor().newInstance();
+        } catch (ReflectiveOperationException | ClassCastException exception) {
+            throw new OpflowBootstrapException("Invalid codec: " + name, exception);
+        }
+        register(codec);
+        return codec;
+    }
+
+    /**
+     * Encodes the body when it is larger than the threshold and marks the
+     * properties with the name of the codec.
+     */
+    public static byte[] encode(OpflowCodec codec, int threshold, AMQP.BasicProperties.Builder propBuilder,
+            byte[] body) throws IOException {
+        if (codec == null || body == null || body.length < threshold) return body;
+        propBuilder.contentEncoding(codec.getName());
+        return codec.encode(body);
+    }
+
+    /**
+     * Decodes the bodies of the registered codecs only, the other values of
+     * contentEncoding (e.g. a charset set by another client) are passed through.
+     */
+    public static byte[] decode(String contentEncoding, byte[] body) throws IOException {
+        if (contentEncoding == null || body == null) return body;
+        OpflowCodec codec = CODECS.get(contentEncoding);
+        if (codec == null) return body;
+        return codec.decode(body);
+    }
+
+    public static class Gzip extends OpflowCodec {
+        private final int maxLength;
+
+        public Gzip() {
+            this(DEFAULT_MAX_LENGTH);
+        }
+
+        public Gzip(int maxLength) {
+            this.maxLength = maxLength;
+        }
+
+        @Override
+        public String getName() {
+            return "gzip";
+        }
+
+        @Override
+        public byte[] encode(byte[] data) throws IOException {
+            ByteArrayOutputStream output = new ByteArrayOutputStream(Math.max(64, data.length / 4));
+            try (GZIPOutputStream gzip = new GZIPOutputStream(output)) {
+                gzip.write(data);
+            }
+            return output.toByteArray();
+        }
+
+        @Override
+        public byte[] decode(byte[] data) throws IOException {
+            ByteArrayOutputStream output = new ByteArrayOutputStream((int) Math.min(maxLength, data.length * 4L));
+            try (GZIPInputStream gzip = new GZIPInputStream(new ByteArrayInputStream(data))) {
+                byte[] buffer = new byte[8192];
+                int count;
+                while ((count = gzip.read(buffer)) > 0) {
+                    if (count > maxLength - output.size()) {
+                        throw new IOException("Invalid gzip body, the decoded length exceeds " + maxLength);
+                    }
+                    output.write(buffer, 0, count);
+                }
+            }
+            return output.toByteArray();
+        }
+    }
+
+    /**
+     * A LZ4 block prefixed by the length of the original data (4 bytes, big
+     * endian).
+     */
+    public static class Lz4 extends OpflowCodec {
+        private final int maxLength;
+
+        public Lz4() {
+            this(DEFAULT_MAX_LENGTH);
+        }
+
+        public Lz4(int maxLength) {
+            this.maxLength = maxLength;
+        }
+
+        @Override
+        public String getName() {
+            return "lz4";
+        }
+
+        @Override
+        public byte[] encode(byte[] data) throws IOException {
+            LZ4Compressor compressor = LZ4Factory.fastestInstance().fastCompressor();
+            byte[] output = new byte[4 + compressor.maxCompressedLength(data.length)];
+            output[0] = (byte) (data.length >>> 24);
+            output[1] = (byte) (data.length >>> 16);
+            output[2] = (byte) (data.length >>> 8);
+            output[3] = (byte) data.length;
+            int length = compressor.compress(data, 0, data.length, output, 4, output.length - 4);
+            byte[] result = new byte[4 + length];
+            System.arraycopy(output, 0, result, 0, result.length);
+            return result;
+        }
+
+        @Override
+        public byte[] decode(byte[] data) throws IOException {
+            if (data.length < 4) {
+                throw new IOException("Invalid lz4 body, the length prefix is missing");
+            }
+            int length = ((data[0] & 0xff) << 24) | ((data[1] & 0xff) << 16) | ((data[2] & 0xff) << 8) | (data[3] & 0xff);
+            // a LZ4 block expands at most 255 times, a larger length comes from a corrupt header
+            if (length < 0 || length > 255L * (data.length - 4) || length > maxLength) {
+                throw new IOException("Invalid lz4 body, the length prefix is corrupt: " + length);
+            }
+            byte[] output = new byte[length];
+            int decoded;
+            try {
+                // the safe decompressor never reads nor writes outside of the given ranges
+                decoded = LZ4Factory.fastestInstance().safeDecompressor().decompress(data, 4, data.length - 4, output, 0);
+            } catch (LZ4Exception exception) {
+                throw new IOException("Invalid lz4 body", exception);
+            }
+            if (decoded != length) {
+                throw new IOException("Invalid lz4 body, " + decoded + " bytes are decoded instead of " + length);
+            }
+            return output;
+        }
+    }
+}
@@ -7,11 +7,19 @@ import com.devebot.opflow.exception.OpflowInterceptionException;
 import com.devebot.opflow.exception.OpflowRequestFailureException;
 import com.devebot.opflow.exception.OpflowRequestTimeoutException;
 import com.devebot.opflow.supports.OpflowDateTime;
+import com.rabbitmq.client.AMQP;
+import com.rabbitmq.client.Channel;
 import io.undertow.server.RoutingHandler;
+import java.io.IOException;
 import java.lang.annotation.Annotation;
 import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.InvocationTargetException;
 import java.lang.reflect.Method;
+import java.lang.reflect.ParameterizedType;
 import java.lang.reflect.Proxy;
+import java.lang.reflect.Type;
+import java.lang.reflect.TypeVariable;
+import java.lang.reflect.WildcardType;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Date;
@@ -21,6 +29,17 @@ import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.CompletionStage;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Function;
+import java.util.function.Supplier;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
@@ -34,13 +53,17 @@ public class OpflowCommander implements AutoCloseable {
     });
 
     public final static List<String> SUPPORT_BEAN_NAMES = Arrays.asList(new String[] {
-        "restServer", "rpcWatcher"
+        "restServer", "rpcWatcher", "resultCache"
     });
 
     public final static List<String> ALL_BEAN_NAMES = OpflowUtil.mergeLists(SERVICE_BEAN_NAMES, SUPPORT_BEAN_NAMES);
 
     public final static String PARAM_RESERVE_WORKER_ENABLED = "reserveWorkerEnabled";
 
+    public final static String PARAM_COMPACT_ROUTINE_ID_ENABLED = "compactRoutineIdEnabled";
+
+    public final static long DEFAULT_RESULT_CACHE_TTL = 60000;
+
     private final static Logger LOG = LoggerFactory.getLogger(OpflowCommander.class);
 
     private final String commanderId;
@@ -49,6 +72,13 @@ public class OpflowCommander implements AutoCloseable {
     private final OpflowConfig.Loader configLoader;
 
     private boolean reserveWorkerEnabled;
+    private boolean compactRoutineIdEnabled;
+    private OpflowResultCache resultCache;
+    private long resultCacheTtl;
+    private int resultCacheLimit;
+    private final Set<String> resultCacheRoutineIds = new HashSet<>();
+    private OpflowEngine.ConsumerInfo cacheInvalidator;
+    private ExecutorService reserveWorkerExecutor;
     private OpflowPubsubHandler configurer;
     private OpflowRpcMaster rpcMaster;
     private OpflowPubsubHandler publisher;
@@ -108,6 +138,32 @@ public class OpflowCommander implements AutoCloseable {
         Map<String, Object> publisherCfg = (Map<String, Object>)kwargs.get("publisher");
         Map<String, Object> rpcWatcherCfg = (Map<String, Object>)kwargs.get("rpcWatcher");
         Map<String, Object> restServerCfg = (Map<String, Object>)kwargs.get("restServer");
+        final Map<String, Object> resultCacheCfg = OpflowUtil.ensureNotNull((Map<String, Object>)kwargs.get("resultCache"));
+
+        // the serverlets accept both forms, the compact one is opt-in for the old serverlets
+        compactRoutineIdEnabled = (rpcMasterCfg != null && Boolean.TRUE.equals(rpcMasterCfg.get(PARAM_COMPACT_ROUTINE_ID_ENABLED)));
+
+        // the routines are cached by their annotation or by the cacheRoutineIds of the resultCache section
+        if (!Boolean.FALSE.equals(resultCacheCfg.get("enabled"))) {
+            resultCache = new OpflowResultCache(commanderId);
+            if (resultCacheCfg.get("cacheTtl") instanceof Number && ((Number) resultCacheCfg.get("cacheTtl")).longValue() > 0) {
+                resultCacheTtl = ((Number) resultCacheCfg.get("cacheTtl")).longValue();
+            } else {
+                resultCacheTtl = DEFAULT_RESULT_CACHE_TTL;
+            }
+            if (resultCacheCfg.get("cacheLimit") instanceof Integer && (Integer) resultCacheCfg.get("cacheLimit") > 0) {
+                resultCacheLimit = (Integer) resultCacheCfg.get("cacheLimit");
+            } else {
+                resultCacheLimit = OpflowResultCache.DEFAULT_LIMIT;
+            }
+            if (resultCacheCfg.get("cacheRoutineIds") instanceof String[]) {
+                resultCacheRoutineIds.addAll(Arrays.asList((String[]) resultCacheCfg.get("cacheRoutineIds")));
+            } else if (resultCacheCfg.get("cacheRoutineIds") instanceof List) {
+                for (Object routineId : (List) resultCacheCfg.get("cacheRoutineIds")) {
+                    resultCacheRoutineIds.add(routineId.toString());
+                }
+            }
+        }
 
         HashSet<String> checkExchange = new HashSet<>();
 
@@ -142,6 +198,9 @@ public class OpflowCommander implements AutoCloseable {
             if (OpflowUtil.isComponentEnabled(configurerCfg)) {
                 configurer = new OpflowPubsubHandler(configurerCfg);
             }
+            if (resultCache != null && configurer != null && Boolean.TRUE.equals(resultCacheCfg.get("cacheInvalidationEnabled"))) {
+                cacheInvalidator = subscribeCacheInvalidation();
+            }
             if (OpflowUtil.isComponentEnabled(rpcMasterCfg)) {
                 rpcMaster = new OpflowRpcMaster(rpcMasterCfg);
             }
@@ -170,6 +229,24 @@ public class OpflowCommander implements AutoCloseable {
         }
     }
     
+    /**
+     * The threads which wait for the Future results of the reserve worker.
+     */
+    private synchronized ExecutorService getReserveWorkerExecutor() {
+        if (reserveWorkerExecutor == null) {
+            reserveWorkerExecutor = Executors.newCachedThreadPool(new ThreadFactory() {
+                private final AtomicInteger counter = new AtomicInteger();
+                @Override
+                public Thread newThread(Runnable runnable) {
+                    Thread thread = new Thread(runnable, "opflow-commander-" + commanderId + "-reserve-" + counter.incrementAndGet());
+                    thread.setDaemon(true);
+                    return thread;
+                }
+            });
+        }
+        return reserveWorkerExecutor;
+    }
+
     public boolean isReserveWorkerEnabled() {
         return this.reserveWorkerEnabled;
     }
@@ -185,6 +262,60 @@ public class OpflowCommander implements AutoCloseable {
         return null;
     }
     
+    /**
+     * Clears the cached results of a routine (methodId, alias or routineId),
+     * or of all routines when it is null. The other commanders are notified
+     * through the configurer, when it is available.
+     */
+    public void invalidateResultCache(String routineId) {
+        if (resultCache != null) {
+            resultCache.invalidate(routineId);
+        }
+        if (configurer != null) {
+            Map<String, Object> headers = OpflowUtil.buildMap()
+                    .put(OpflowResultCache.HEADER_CACHE_ACTION, OpflowResultCache.ACTION_INVALIDATE)
+                    .toMap();
+            if (routineId != null) {
+                headers.put("routineId", routineId);
+            }
+            String routingKey = configurer.getEngine().getRoutingKey();
+            configurer.publish(new byte[0], headers, OpflowResultCache.getInvalidationKey(routingKey));
+        }
+    }
+
+    /**
+     * Each commander consumes the configurer exchange with its own server-named
+     * queue, bound with the invalidation key only, so that every commander
+     * receives the invalidation messages and the configurers do not.
+     */
+    private OpflowEngine.ConsumerInfo subscribeCacheInvalidation() {
+        final String consumerId = OpflowUtil.getLogID();
+        return configurer.getEngine().consume(new OpflowListener() {
+            @Override
+            public boolean processMessage(byte[] content, AMQP.BasicProperties properties,
+                    String queueName, Channel channel, String workerTag) throws IOException {
+                Map<String, Object> headers = properties.getHeaders();
+                if (headers == null || headers.get(OpflowResultCache.HEADER_CACHE_ACTION) == null ||
+                        !OpflowResultCache.ACTION_INVALIDATE.equals(headers.get(OpflowResultCache.HEADER_CACHE_ACTION).toString())) {
+                    return false;
+                }
+                String routineId = (headers.get("routineId") != null) ? headers.get("routineId").toString() : null;
+                resultCache.invalidate(routineId);
+                if (logTracer.ready(LOG, "debug")) LOG.debug(logTracer
+                        .put("routineId", routineId)
+                        .text("Commander[${commanderId}] invalidates the result cache of routine[${routineId}]")
+                        .stringify());
+                return true;
+            }
+        }, OpflowUtil.buildMap()
+                .put("consumerId", consumerId)
+                .put("autoAck", Boolean.TRUE)
+                .put("bindingKeys", new String[] {
+                    OpflowResultCache.getInvalidationKey(configurer.getEngine().getRoutingKey())
+                })
+                .toMap());
+    }
+
     public void ping(String query) throws Throwable {
         rpcChecker.send(new OpflowRpcChecker.Ping(query));
     }
@@ -211,7 +342,11 @@ public class OpflowCommander implements AutoCloseable {
         if (rpcWatcher != null) rpcWatcher.close();
         if (publisher != null) publisher.close();
         if (rpcMaster != null) rpcMaster.close();
+        if (cacheInvalidator != null) configurer.getEngine().cancelConsumer(cacheInvalidator);
         if (configurer != null) configurer.close();
+        synchronized (this) {
+            if (reserveWorkerExecutor != null) reserveWorkerExecutor.shutdown();
+        }
 
         if (logTracer.ready(LOG, "info")) LOG.info(logTracer
                 .text("Commander[${commanderId}].close() has done!")
@@ -362,6 +497,12 @@ public class OpflowCommander implements AutoCloseable {
                                 public void transform(Map<String, Object> opts) {
                                     opts.put("class", entry.getKey());
                                     opts.put("methods", val.getMethodNames());
+                                    if (!val.getCompactRoutineIds().isEmpty()) {
+                                        opts.put("compactRoutineIds", val.getCompactRoutineIds());
+                                    }
+                                    if (!val.getCachedMethods().isEmpty()) {
+                                        opts.put("cachedMethods", val.getCachedMethods());
+                                    }
                                     opts.put("isReserveWorkerReady", val.hasReserveWorker());
                                     if (val.getReserveWorkerClassName() != null) {
                                         opts.put("reserveWorkerClassName", val.getReserveWorkerClassName());
@@ -400,11 +541,15 @@ public class OpflowCommander implements AutoCloseable {
         private final Object reserveWorker;
         private final boolean reserveWorkerEnabled;
         private final Map<String, String> aliasOfMethod = new HashMap<>();
+        private final Map<String, String> compactOfMethod = new HashMap<>();
         private final Map<String, Boolean> methodIsAsync = new HashMap<>();
+        private final Map<String, Type> futureResultTypes = new HashMap<>();
+        private final Map<String, OpflowBinarytool.Schema> binarySchemas = new HashMap<>();
         private final OpflowRpcMaster rpcMaster;
         private final OpflowPubsubHandler publisher;
 
-        public RpcInvocationHandler(OpflowRpcMaster rpcMaster, OpflowPubsubHandler publisher, Class clazz, Object reserveWorker, boolean reserveWorkerEnabled) {
+        public RpcInvocationHandler(OpflowRpcMaster rpcMaster, OpflowPubsubHandler publisher, Class clazz, Object reserveWorker,
+                boolean reserveWorkerEnabled, String bodyFormat, boolean compactRoutineIdEnabled) {
             this.clazz = clazz;
             this.reserveWorker = reserveWorker;
             this.reserveWorkerEnabled = reserveWorkerEnabled;
@@ -422,8 +567,31 @@ public class OpflowCommander implements AutoCloseable {
                             .put("routineId", methodId)
                             .text("link alias to routineId")
                             .stringify());
+                } else if (compactRoutineIdEnabled) {
+                    compactOfMethod.put(methodId, OpflowUtil.getCompactRoutineId(methodId));
+                }
+                String routineId = aliasOfMethod.get(methodId);
+                if (routineId == null) routineId = compactOfMethod.getOrDefault(methodId, methodId);
+                // the annotation overrides the settings of the resultCache section
+                long cacheTtl = (routine != null) ? routine.cacheTtl() : 0;
+                int cacheLimit = (routine != null) ? routine.cacheLimit() : 0;
+                if (cacheTtl <= 0 && (resultCacheRoutineIds.contains(methodId) || resultCacheRoutineIds.contains(routineId))) {
+                    cacheTtl = resultCacheTtl;
+                    cacheLimit = resultCacheLimit;
+                }
+                if (resultCache != null && cacheTtl > 0 && method.getReturnType() != void.class) {
+                    resultCache.register(methodId, new String[] { routineId }, cacheTtl, cacheLimit);
                 }
                 methodIsAsync.put(methodId, (routine != null) && routine.isAsync());
+                Type resultType = getFutureResultType(method);
+                if (resultType != null) {
+                    futureResultTypes.put(methodId, resultType);
+                }
+                // the format of the annotation overrides the one of the registered type
+                String format = (routine != null && routine.format().length() > 0) ? routine.format() : bodyFormat;
+                if (OpflowBinarytool.FORMAT.equals(format)) {
+                    binarySchemas.put(methodId, OpflowBinarytool.getSchema(method.getGenericParameterTypes()));
+                }
             }
             this.rpcMaster = rpcMaster;
             this.publisher = publisher;
@@ -441,6 +609,19 @@ public class OpflowCommander implements AutoCloseable {
         public Set<String> getMethodNames() {
             return methodIsAsync.keySet();
         }
+        
+        public Map<String, String> getCompactRoutineIds() {
+            return compactOfMethod;
+        }
+        
+        public List<String> getCachedMethods() {
+            List<String> methodIds = new ArrayList<>();
+            if (resultCache == null) return methodIds;
+            for (String methodId : methodIsAsync.keySet()) {
+                if (resultCache.isEnabled(methodId)) methodIds.add(methodId);
+            }
+            return methodIds;
+        }
 
         @Override
         public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
@@ -448,7 +629,8 @@ public class OpflowCommander implements AutoCloseable {
             final String requestId = OpflowUtil.getLogID();
             final OpflowLogTracer logRequest = logTracer.branch("requestId", requestId);
             String methodId = OpflowUtil.getMethodSignature(method);
-            String routineId = aliasOfMethod.getOrDefault(methodId, methodId);
+            String routineId = aliasOfMethod.get(methodId);
+            if (routineId == null) routineId = compactOfMethod.getOrDefault(methodId, methodId);
             Boolean isAsync = methodIsAsync.getOrDefault(methodId, false);
             if (logRequest.ready(LOG, "info")) LOG.info(logRequest
                     .put("methodId", methodId)
@@ -458,22 +640,46 @@ public class OpflowCommander implements AutoCloseable {
                     .stringify());
 
             if (args == null) args = new Object[0];
-            String body = OpflowJsontool.toString(args);
+            OpflowBinarytool.Schema schema = binarySchemas.get(methodId);
+            String bodyFormat = (schema != null) ? OpflowBinarytool.FORMAT : null;
+            byte[] body = (schema != null) ? schema.toBytes(args) : OpflowUtil.getBytes(OpflowJsontool.toString(args));
+            Type resultType = futureResultTypes.get(methodId);
 
             if (logRequest.ready(LOG, "trace")) LOG.trace(logRequest
                     .put("args", args)
-                    .put("body", body)
+                    .put("bodyFormat", bodyFormat)
+                    .put("bodyLength", body.length)
                     .text("Request[${requestId}] - RpcInvocationHandler.invoke() details")
                     .stringify());
 
+            // the serialized arguments are the key of the cached result
+            final boolean cacheable = resultCache != null && resultCache.isEnabled(methodId);
+            final long cacheGeneration = cacheable ? resultCache.getGeneration(methodId) : 0;
+            if (cacheable) {
+                byte[] cached = resultCache.get(methodId, body);
+                if (cached != null) {
+                    if (logRequest.ready(LOG, "trace")) LOG.trace(logRequest
+                            .text("Request[${requestId}] - RpcInvocationHandler.invoke() return the cached output")
+                            .stringify());
+                    if (resultType != null) {
+                        return CompletableFuture.completedFuture(decodeValue(cached, bodyFormat, resultType));
+                    }
+                    return decodeValue(cached, bodyFormat, method.getGenericReturnType());
+                }
+            }
+
             if (this.publisher != null && isAsync && void.class.equals(method.getReturnType())) {
                 if (logRequest.ready(LOG, "trace")) LOG.trace(logRequest
                         .text("Request[${requestId}] - RpcInvocationHandler.invoke() dispatch the call to the publisher")
                         .stringify());
-                this.publisher.publish(body, OpflowUtil.buildMap()
+                Map<String, Object> headers = OpflowUtil.buildMap()
                         .put("requestId", requestId)
                         .put("routineId", routineId)
-                        .toMap());
+                        .toMap();
+                if (bodyFormat != null) {
+                    headers.put("bodyFormat", bodyFormat);
+                }
+                this.publisher.publish(body, headers);
                 return null;
             } else {
                 if (logRequest.ready(LOG, "trace")) LOG.trace(logRequest
@@ -488,9 +694,15 @@ public class OpflowCommander implements AutoCloseable {
                 }
             }
 
+            if (resultType != null) {
+                return invokeAsync(method, args, methodId, routineId, requestId, body, bodyFormat, resultType,
+                        cacheable, cacheGeneration, logRequest);
+            }
+
             OpflowRpcRequest rpcSession = rpcMaster.request(routineId, body, OpflowUtil.buildMap()
                     .put("requestId", requestId)
                     .put("progressEnabled", false)
+                    .put("bodyFormat", bodyFormat)
                     .toMap());
             OpflowRpcResult rpcResult = rpcSession.extractResult(false);
 
@@ -509,14 +721,129 @@ public class OpflowCommander implements AutoCloseable {
 
             if (logRequest.ready(LOG, "trace")) LOG.trace(logRequest
                     .put("returnType", method.getReturnType().getName())
-                    .put("returnValue", rpcResult.getValueAsString())
+                    .put("returnValue", (bodyFormat == null) ? rpcResult.getValueAsString() : null)
                     .text("Request[${requestId}] - RpcInvocationHandler.invoke() return the output")
                     .stringify());
 
             if (method.getReturnType() == void.class) return null;
 
-            return OpflowJsontool.toObject(rpcResult.getValueAsString(), method.getReturnType());
+            if (cacheable) {
+                resultCache.put(methodId, body, rpcResult.getValue(), cacheGeneration);
+            }
+
+            return extractValue(rpcResult, bodyFormat, method.getGenericReturnType());
+        }
+
+        private CompletableFuture<Object> invokeAsync(final Method method, final Object[] args, final String methodId,
+                final String routineId, final String requestId, final byte[] body, final String bodyFormat,
+                final Type resultType, final boolean cacheable, final long cacheGeneration, final OpflowLogTracer logRequest) {
+            return rpcMaster.requestAsync(routineId, body, OpflowUtil.buildMap()
+                    .put("requestId", requestId)
+                    .put("progressEnabled", false)
+                    .put("bodyFormat", bodyFormat)
+                    .toMap()).thenCompose(new Function<OpflowRpcResult, CompletionStage<Object>>() {
+                @Override
+                public CompletionStage<Object> apply(OpflowRpcResult rpcResult) {
+                    if (rpcResult.isTimeout()) {
+                        rpcWatcher.setCongested(true);
+                        if (hasReserveWorker()) {
+                            return invokeReserveWorker(method, args);
+                        }
+                        return failedFuture(new OpflowRequestTimeoutException());
+                    }
+
+                    if (rpcResult.isFailed()) {
+                        Map<String, Object> errorMap = OpflowJsontool.toObjectMap(rpcResult.getErrorAsString());
+                        return failedFuture(rebuildInvokerException(errorMap));
+                    }
+
+                    if (logRequest.ready(LOG, "trace")) LOG.trace(logRequest
+                            .put("resultType", resultType.toString())
+                            .put("returnValue", (bodyFormat == null) ? rpcResult.getValueAsString() : null)
+                            .text("Request[${requestId}] - RpcInvocationHandler.invokeAsync() complete the future")
+                            .stringify());
+
+                    if (cacheable) {
+                        resultCache.put(methodId, body, rpcResult.getValue(), cacheGeneration);
+                    }
+
+                    return CompletableFuture.completedFuture(extractValue(rpcResult, bodyFormat, resultType));
+                }
+            });
+        }
+
+        private CompletionStage<Object> invokeReserveWorker(Method method, Object[] args) {
+            try {
+                Object output = method.invoke(this.reserveWorker, args);
+                if (output instanceof CompletionStage) {
+                    return (CompletionStage<Object>) output;
+                }
+                if (output instanceof Future) {
+                    // this stage runs on the consumer or the timeout thread, which must not wait for the worker
+                    final Future future = (Future) output;
+                    return CompletableFuture.supplyAsync(new Supplier<Object>() {
+                        @Override
+                        public Object get() {
+                            try {
+                                return future.get();
+                            } catch (ExecutionException exception) {
+                                throw new CompletionException(exception.getCause());
+                            } catch (InterruptedException exception) {
+                                Thread.currentThread().interrupt();
+                                throw new CompletionException(exception);
+                            }
+                        }
+                    }, getReserveWorkerExecutor());
+                }
+                return CompletableFuture.completedFuture(output);
+            } catch (InvocationTargetException exception) {
+                return failedFuture(exception.getCause());
+            } catch (Exception exception) {
+                return failedFuture(exception);
+            }
+        }
+    }
+
+    /**
+     * The worker returns the value in the format of the request.
+     */
+    private static Object extractValue(OpflowRpcResult rpcResult, String bodyFormat, Type resultType) {
+        return decodeValue(rpcResult.getValue(), bodyFormat, resultType);
+    }
+
+    private static Object decodeValue(byte[] value, String bodyFormat, Type resultType) {
+        if (OpflowBinarytool.FORMAT.equals(bodyFormat)) {
+            return OpflowBinarytool.toObject(value, resultType);
         }
+        return OpflowJsontool.toObject((value != null) ? OpflowUtil.getString(value) : null, resultType);
+    }
+
+    private static CompletableFuture<Object> failedFuture(Throwable exception) {
+        CompletableFuture<Object> future = new CompletableFuture<>();
+        future.completeExceptionally(exception);
+        return future;
+    }
+
+    /**
+     * Returns the type of the value of a method which returns a
+     * CompletableFuture&lt;T&gt; or a Future&lt;T&gt;, null for other methods.
+     */
+    private static Type getFutureResultType(Method method) {
+        Class returnType = method.getReturnType();
+        if (returnType != CompletableFuture.class && returnType != Future.class) return null;
+        Type genericType = method.getGenericReturnType();
+        if (!(genericType instanceof ParameterizedType)) return Object.class;
+        Type resultType = ((ParameterizedType) genericType).getActualTypeArguments()[0];
+        if (resultType instanceof TypeVariable || resultType instanceof WildcardType) return null;
+        return resultType;
+    }
+
+    private static boolean isSupportedGenericMethod(Method method) {
+        if (method.getTypeParameters().length > 0) return false;
+        for (Type parameterType : method.getGenericParameterTypes()) {
+            if (!(parameterType instanceof Class)) return false;
+        }
+        return getFutureResultType(method) != null;
     }
 
     private static Throwable rebuildInvokerException(Map<String, Object> errorMap) {
@@ -542,7 +869,7 @@ public class OpflowCommander implements AutoCloseable {
 
     private final Map<String, RpcInvocationHandler> handlers = new LinkedHashMap<>();
 
-    private RpcInvocationHandler getInvocationHandler(Class clazz, Object bean) {
+    private RpcInvocationHandler getInvocationHandler(Class clazz, Object bean, String bodyFormat) {
         validateType(clazz);
         String clazzName = clazz.getName();
         if (logTracer.ready(LOG, "debug")) LOG.debug(logTracer
@@ -554,7 +881,8 @@ public class OpflowCommander implements AutoCloseable {
                     .put("className", clazzName)
                     .text("getInvocationHandler() InvocationHandler not found, create new one")
                     .stringify());
-            handlers.put(clazzName, new RpcInvocationHandler(rpcMaster, publisher, clazz, bean, reserveWorkerEnabled));
+            handlers.put(clazzName, new RpcInvocationHandler(rpcMaster, publisher, clazz, bean, reserveWorkerEnabled, bodyFormat,
+                    compactRoutineIdEnabled));
         }
         return handlers.get(clazzName);
     }
@@ -576,7 +904,7 @@ public class OpflowCommander implements AutoCloseable {
         }
         Method[] methods = type.getDeclaredMethods();
         for(Method method:methods) {
-            if (OpflowUtil.isGenericDeclaration(method.toGenericString())) {
+            if (OpflowUtil.isGenericDeclaration(method.toGenericString()) && !isSupportedGenericMethod(method)) {
                 ok = false;
                 if (logTracer.ready(LOG, "debug")) LOG.debug(logTracer
                         .put("methodString", method.toGenericString())
@@ -595,13 +923,21 @@ public class OpflowCommander implements AutoCloseable {
     }
 
     public <T> T registerType(Class<T> type, T bean) {
+        return registerType(type, bean, null);
+    }
+
+    /**
+     * Registers a type whose methods send their arguments in the bodyFormat
+     * ("binary" or null for JSON), unless their annotation has a format.
+     */
+    public <T> T registerType(Class<T> type, T bean, String bodyFormat) {
         try {
             if (logTracer.ready(LOG, "debug")) LOG.debug(logTracer
                     .put("className", type.getName())
                     .put("classLoaderName", type.getClassLoader().getClass().getName())
                     .text("registerType() calls newProxyInstance()")
                     .stringify());
-            T t = (T) Proxy.newProxyInstance(type.getClassLoader(), new Class[] {type}, getInvocationHandler(type, bean));
+            T t = (T) Proxy.newProxyInstance(type.getClassLoader(), new Class[] {type}, getInvocationHandler(type, bean, bodyFormat));
             if (logTracer.ready(LOG, "debug")) LOG.debug(logTracer
                     .put("className", type.getName())
                     .text("newProxyInstance() has completed")
@@ -61,6 +61,8 @@ public class OpflowConfig {
             params.put("responseDurable", handlerNode.get("responseDurable"));
             params.put("responseExclusive", handlerNode.get("responseExclusive"));
             params.put("responseAutoDelete", handlerNode.get("responseAutoDelete"));
+            params.put("directReplyEnabled", handlerNode.get("directReplyEnabled"));
+            params.put("responseShards", handlerNode.get("responseShards"));
 
             transformParameters(params);
             return params;
@@ -97,6 +99,10 @@ public class OpflowConfig {
 
             params.put("responseName", handlerNode.get("responseName"));
             params.put("prefetch", handlerNode.get("prefetch"));
+            params.put("concurrency", handlerNode.get("concurrency"));
+            params.put("dispatchPoolSize", handlerNode.get("dispatchPoolSize"));
+            params.put("dispatchPoolType", handlerNode.get("dispatchPoolType"));
+            params.put("manualAckEnabled", handlerNode.get("manualAckEnabled"));
 
             transformParameters(params);
             return params;
@@ -133,8 +139,11 @@ public class OpflowConfig {
 
             params.put("recyclebinName", handlerNode.get("recyclebinName"));
             params.put("prefetch", handlerNode.get("prefetch"));
+            params.put("manualAckEnabled", handlerNode.get("manualAckEnabled"));
             params.put("subscriberLimit", handlerNode.get("subscriberLimit"));
             params.put("redeliveredLimit", handlerNode.get("redeliveredLimit"));
+            params.put("autoBatchSize", handlerNode.get("autoBatchSize"));
+            params.put("autoBatchDelay", handlerNode.get("autoBatchDelay"));
 
             transformParameters(params);
             return params;
@@ -177,6 +186,9 @@ public class OpflowConfig {
                     componentCfg.put("responseExclusive", componentNode.get("responseExclusive"));
                     componentCfg.put("responseAutoDelete", componentNode.get("responseAutoDelete"));
                     componentCfg.put("responseQueueSuffix", componentNode.get("responseQueueSuffix"));
+                    componentCfg.put("directReplyEnabled", componentNode.get("directReplyEnabled"));
+                    componentCfg.put("responseShards", componentNode.get("responseShards"));
+                    componentCfg.put("compactRoutineIdEnabled", componentNode.get("compactRoutineIdEnabled"));
                     componentCfg.put("monitorId", componentNode.get("monitorId"));
                     componentCfg.put("monitorEnabled", componentNode.get("monitorEnabled"));
                     componentCfg.put("monitorInterval", componentNode.get("monitorInterval"));
@@ -189,6 +201,12 @@ public class OpflowConfig {
                     componentCfg.put("host", componentNode.get("host"));
                     componentCfg.put("ports", componentNode.get("ports"));
                 }
+                if ("resultCache".equals(componentName)) {
+                    componentCfg.put("cacheTtl", componentNode.get("cacheTtl"));
+                    componentCfg.put("cacheLimit", componentNode.get("cacheLimit"));
+                    componentCfg.put("cacheRoutineIds", componentNode.get("cacheRoutineIds"));
+                    componentCfg.put("cacheInvalidationEnabled", componentNode.get("cacheInvalidationEnabled"));
+                }
                 transformParameters(componentCfg);
                 params.put(componentName, componentCfg);
             }
@@ -224,10 +242,16 @@ public class OpflowConfig {
                 if ("rpcWorker".equals(componentName)) {
                     componentCfg.put("operatorName", componentNode.get("operatorName"));
                     componentCfg.put("responseName", componentNode.get("responseName"));
+                    componentCfg.put("prefetch", componentNode.get("prefetch"));
+                    componentCfg.put("concurrency", componentNode.get("concurrency"));
+                    componentCfg.put("dispatchPoolSize", componentNode.get("dispatchPoolSize"));
+                    componentCfg.put("dispatchPoolType", componentNode.get("dispatchPoolType"));
+                    componentCfg.put("manualAckEnabled", componentNode.get("manualAckEnabled"));
                 }
                 if ("subscriber".equals(componentName)) {
                     componentCfg.put("subscriberName", componentNode.get("subscriberName"));
                     componentCfg.put("recyclebinName", componentNode.get("recyclebinName"));
+                    componentCfg.put("manualAckEnabled", componentNode.get("manualAckEnabled"));
                 }
                 transformParameters(componentCfg);
                 params.put(componentName, componentCfg);
@@ -287,24 +311,31 @@ public class OpflowConfig {
     
     private static final String[] BOOLEAN_FIELDS = new String[] {
         "enabled", "verbose", "automaticRecoveryEnabled", "topologyRecoveryEnabled", "monitorEnabled",
-        "responseDurable", "responseExclusive", "responseAutoDelete"
+        "responseDurable", "responseExclusive", "responseAutoDelete", "confirmationEnabled",
+        "adaptivePrefetchEnabled", "directReplyEnabled", "compactRoutineIdEnabled",
+        "cacheInvalidationEnabled", "manualAckEnabled"
     };
 
     private static final String[] STRING_FIELDS = new String[] {
         "responseQueueSuffix"
     };
     
-    private static final String[] STRING_ARRAY_FIELDS = new String[] { "otherKeys" };
+    private static final String[] STRING_ARRAY_FIELDS = new String[] { "otherKeys", "addresses", "cacheRoutineIds" };
     
     private static final String[] INTEGER_FIELDS = new String[] {
         "port", "channelMax", "frameMax", "heartbeat", "networkRecoveryInterval", 
-        "prefetch", "subscriberLimit", "redeliveredLimit", "monitorInterval", "threadPoolSize"
+        "prefetch", "subscriberLimit", "redeliveredLimit", "monitorInterval", "threadPoolSize",
+        "producingConnectionPoolSize", "producingChannelPoolSize", "producingChannelWaitTimeout",
+        "adminChannelPoolSize", "declarationCacheTtl", "confirmationLimit", "autoBatchSize", "autoBatchDelay",
+        "concurrency", "dispatchPoolSize", "ackBatchSize", "ackBatchDelay",
+        "prefetchMin", "prefetchMax", "responseShards",
+        "codecThreshold", "cacheLimit"
     };
     
     private static final String[] INTEGER_ARRAY_FIELDS = new String[] { "ports" };
     
     private static final String[] LONGINT_FIELDS = new String[] {
-        "expiration", "interval", "monitorTimeout"
+        "expiration", "interval", "monitorTimeout", "cacheTtl"
     };
     
     private static void transformParameters(Map<String, Object> params) {
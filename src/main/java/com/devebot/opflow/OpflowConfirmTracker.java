@@ -0,0 +1,164 @@
+package com.devebot.opflow;
+
+import com.devebot.opflow.exception.OpflowOperationException;
+import com.rabbitmq.client.ConfirmListener;
+import com.rabbitmq.client.ShutdownListener;
+import com.rabbitmq.client.ShutdownSignalException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeoutException;
+
+/**
+ * Tracks the unconfirmed publishes of a channel in confirm mode. The delivery
+ * tags are kept in a ring of primitive longs, which stays sorted because the
+ * publish sequence numbers of a channel only grow. A multiple ack/nack settles
+ * the head of the ring, a single one is found by binary search.
+ *
+ * @author drupalex
+ */
+class OpflowConfirmTracker implements ConfirmListener, ShutdownListener {
+    private final long[] tags;
+    private final CompletableFuture<Boolean>[] futures;
+    private final long waitTimeout;
+    private int head = 0;
+    private int size = 0;
+    private int pending = 0;
+    private ShutdownSignalException shutdownSignal;
+
+    @SuppressWarnings("unchecked")
+    public OpflowConfirmTracker(int limit, long waitTimeout) {
+        int capacity = Math.max(1, limit);
+        this.tags = new long[capacity];
+        this.futures = new CompletableFuture[capacity];
+        this.waitTimeout = waitTimeout;
+    }
+
+    /**
+     * Registers the sequence number of the next publish, waiting while the
+     * number of unconfirmed messages has reached the limit.
+     */
+    public synchronized CompletableFuture<Boolean> register(long seqNo) throws TimeoutException {
+        long deadline = System.currentTimeMillis() + waitTimeout;
+        while (size == tags.length && shutdownSignal == null) {
+            long remaining = deadline - System.currentTimeMillis();
+            if (remaining <= 0) {
+                throw new TimeoutException("Too many unconfirmed messages (" + pending + ") after " + waitTimeout + "ms");
+            }
+            try {
+                wait(remaining);
+            } catch (InterruptedException exception) {
+                Thread.currentThread().interrupt();
+                throw new OpflowOperationException("Interrupted while waiting for the publisher confirms", exception);
+            }
+        }
+        if (shutdownSignal != null) {
+            throw new OpflowOperationException("The channel has been shutdown", shutdownSignal);
+        }
+        CompletableFuture<Boolean> future = new CompletableFuture<>();
+        int tail = (head + size) % tags.length;
+        tags[tail] = seqNo;
+        futures[tail] = future;
+        size++;
+        pending++;
+        return future;
+    }
+
+    /**
+     * Settles a registered publish that could not be sent.
+     */
+    public void cancel(long seqNo, Throwable cause) {
+        CompletableFuture<Boolean> future;
+        synchronized (this) {
+            future = take(seqNo);
+        }
+        if (future != null) future.completeExceptionally(cause);
+    }
+
+    public synchronized int getPending() {
+        return pending;
+    }
+
+    @Override
+    public void handleAck(long deliveryTag, boolean multiple) {
+        settle(deliveryTag, multiple, Boolean.TRUE);
+    }
+
+    @Override
+    public void handleNack(long deliveryTag, boolean multiple) {
+        settle(deliveryTag, multiple, Boolean.FALSE);
+    }
+
+    @Override
+    public void shutdownCompleted(ShutdownSignalException cause) {
+        CompletableFuture<Boolean>[] outstanding;
+        synchronized (this) {
+            shutdownSignal = cause;
+            outstanding = drain(Long.MAX_VALUE);
+            notifyAll();
+        }
+        OpflowOperationException exception = new OpflowOperationException("The channel has been shutdown before confirmation", cause);
+        for (CompletableFuture<Boolean> future : outstanding) {
+            if (future != null) future.completeExceptionally(exception);
+        }
+    }
+
+    private void settle(long deliveryTag, boolean multiple, Boolean acked) {
+        // the futures are completed outside the lock, their callbacks may be slow
+        if (multiple) {
+            CompletableFuture<Boolean>[] settled;
+            synchronized (this) {
+                settled = drain(deliveryTag);
+            }
+            for (CompletableFuture<Boolean> future : settled) {
+                if (future != null) future.complete(acked);
+            }
+        } else {
+            CompletableFuture<Boolean> future;
+            synchronized (this) {
+                future = take(deliveryTag);
+            }
+            if (future != null) future.complete(acked);
+        }
+    }
+
+    @SuppressWarnings("unchecked")
+    private CompletableFuture<Boolean>[] drain(long deliveryTag) {
+        int count = 0;
+        while (count < size && tags[(head + count) % tags.length] <= deliveryTag) count++;
+        CompletableFuture<Boolean>[] settled = new CompletableFuture[count];
+        for (int i=0; i<count; i++) {
+            settled[i] = futures[head];
+            if (futures[head] != null) pending--;
+            futures[head] = null;
+            head = (head + 1) % tags.length;
+        }
+        size -= count;
+        if (count > 0) notifyAll();
+        return settled;
+    }
+
+    private CompletableFuture<Boolean> take(long deliveryTag) {
+        int low = 0, high = size - 1;
+        while (low <= high) {
+            int mid = (low + high) >>> 1;
+            long tag = tags[(head + mid) % tags.length];
+            if (tag < deliveryTag) {
+                low = mid + 1;
+            } else if (tag > deliveryTag) {
+                high = mid - 1;
+            } else {
+                int index = (head + mid) % tags.length;
+                CompletableFuture<Boolean> future = futures[index];
+                futures[index] = null;
+                if (future != null) pending--;
+                // settled entries at the head give their slots back
+                while (size > 0 && futures[head] == null) {
+                    head = (head + 1) % tags.length;
+                    size--;
+                }
+                notifyAll();
+                return future;
+            }
+        }
+        return null;
+    }
+}
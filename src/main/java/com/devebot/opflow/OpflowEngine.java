@@ -7,18 +7,27 @@ import com.rabbitmq.client.ConnectionFactory;
 import com.rabbitmq.client.Consumer;
 import com.rabbitmq.client.DefaultConsumer;
 import com.rabbitmq.client.Envelope;
+import com.rabbitmq.client.RecoveryDelayHandler;
 import com.rabbitmq.client.ShutdownListener;
 import com.rabbitmq.client.ShutdownSignalException;
 import java.io.IOException;
 import java.net.URISyntaxException;
 import java.security.KeyManagementException;
 import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
 import java.util.LinkedList;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.Semaphore;
 import java.util.concurrent.TimeoutException;
+import java.util.function.Function;
 import javax.net.ssl.SSLContext;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -35,21 +44,38 @@ import com.devebot.opflow.supports.OpflowKeytool;
 public class OpflowEngine implements AutoCloseable {
 
     public static final String[] PARAMETER_NAMES = new String[] {
-        "uri", "host", "port", "virtualHost", "username", "password", "channelMax", "frameMax", "heartbeat",
+        "uri", "host", "port", "addresses", "addressStrategy", "virtualHost", "username", "password", "channelMax", "frameMax", "heartbeat",
         "threadPoolType", "threadPoolSize",
+        "producingConnectionPoolSize", "producingChannelPoolSize", "producingChannelWaitTimeout",
+        "adminChannelPoolSize", "declarationCacheTtl", "confirmationEnabled", "confirmationLimit",
+        "ackBatchSize", "ackBatchDelay", "adaptivePrefetchEnabled", "prefetchMin", "prefetchMax",
+        "codec", "codecThreshold",
         "exchangeName", "exchangeType", "exchangeDurable", "routingKey", "otherKeys", "applicationId",
         "automaticRecoveryEnabled", "topologyRecoveryEnabled", "networkRecoveryInterval",
-        "pkcs12File", "pkcs12Passphrase", "caCertFile", "serverCertFile", "trustStoreFile", "trustPassphrase"
+        "pkcs12File", "pkcs12Passphrase", "caCertFile", "serverCertFile", "trustStoreFile", "trustPassphrase",
+        "connectionFactory"
     };
 
     private final static Logger LOG = LoggerFactory.getLogger(OpflowEngine.class);
+    private final static int DEFAULT_CHANNEL_WAIT_TIMEOUT = 10000;
+    public final static String DIRECT_REPLY_TO = "amq.rabbitmq.reply-to";
     private final OpflowLogTracer logTracer;
     private final String engineId;
 
     private String mode;
     private ConnectionFactory factory;
-    private Connection producingConnection;
-    private Channel producingChannel;
+    private OpflowAddressResolver addressResolver;
+    private OpflowChannelPool producingPool;
+    private OpflowChannelPool adminPool;
+    private int declarationCacheTtl;
+    private int ackBatchSize;
+    private int ackBatchDelay;
+    private boolean adaptivePrefetchEnabled;
+    private int prefetchMin;
+    private int prefetchMax;
+    private OpflowCodec codec;
+    private int codecThreshold;
+    private final Map<Channel, OpflowAckCoalescer> ackCoalescers = new HashMap<>();
     private Connection consumingConnection;
     private Channel consumingChannel;
     private List<ConsumerInfo> consumerInfos = new LinkedList<>();
@@ -75,7 +101,12 @@ public class OpflowEngine implements AutoCloseable {
         
         mode = params.containsKey("mode") ? params.get("mode").toString() : "engine";
         try {
-            factory = new ConnectionFactory();
+            // a given factory (e.g. with its own metrics collector) is configured as the default one
+            if (params.get("connectionFactory") instanceof ConnectionFactory) {
+                factory = (ConnectionFactory) params.get("connectionFactory");
+            } else {
+                factory = new ConnectionFactory();
+            }
             
             String threadPoolType = null;
             if (params.get("threadPoolType") instanceof String) {
@@ -107,6 +138,10 @@ public class OpflowEngine implements AutoCloseable {
                 case "scheduled":
                     threadExecutor = Executors.newScheduledThreadPool(threadPoolSize);
                     break;
+                case "virtual":
+                case "workstealing":
+                    threadExecutor = newExecutorService(threadPoolType, threadPoolSize);
+                    break;
                 default:
                     break;
             }
@@ -208,6 +243,30 @@ public class OpflowEngine implements AutoCloseable {
             if (networkRecoveryInterval != null) {
                 factory.setNetworkRecoveryInterval(networkRecoveryInterval);
             }
+            
+            String[] addresses = null;
+            if (params.get("addresses") instanceof String[]) {
+                addresses = (String[]) params.get("addresses");
+            } else if (params.get("addresses") instanceof String) {
+                addresses = OpflowUtil.splitByComma((String) params.get("addresses"));
+            }
+            if (addresses != null && addresses.length > 0) {
+                final long recoveryInterval = (networkRecoveryInterval != null) ? networkRecoveryInterval : 5000;
+                String addressStrategy = (String) params.get("addressStrategy");
+                addressResolver = new OpflowAddressResolver(logTracer, addresses, addressStrategy, recoveryInterval);
+                // the first recovery attempt goes to another broker at once
+                factory.setRecoveryDelayHandler(new RecoveryDelayHandler() {
+                    @Override
+                    public long getDelay(int recoveryAttempts) {
+                        return (recoveryAttempts == 0) ? 0 : recoveryInterval;
+                    }
+                });
+                if (logTracer.ready(LOG, "info")) LOG.info(logTracer
+                        .put("addresses", addressResolver.getAddressList().toString())
+                        .put("addressStrategy", addressStrategy)
+                        .text("Engine[${engineId}] spreads the connections over ${addresses}")
+                        .stringify());
+            }
 
             String pkcs12File = null;
             if (params.get("pkcs12File") instanceof String) {
@@ -302,7 +361,135 @@ public class OpflowEngine implements AutoCloseable {
                             + "networkRecoveryInterval: ${networkRecoveryInterval}")
                     .stringify());
 
+            Integer adminChannelPoolSize = null;
+            if (params.get("adminChannelPoolSize") instanceof Integer) {
+                adminChannelPoolSize = (Integer)params.get("adminChannelPoolSize");
+            }
+            if (adminChannelPoolSize == null || adminChannelPoolSize <= 0) {
+                adminChannelPoolSize = 2;
+            }
+            
+            if (params.get("declarationCacheTtl") instanceof Integer) {
+                declarationCacheTtl = (Integer)params.get("declarationCacheTtl");
+                if (declarationCacheTtl < 0) declarationCacheTtl = 0;
+            } else {
+                declarationCacheTtl = 2000;
+            }
+            
+            // the acks of the manual-ack consumers are coalesced when ackBatchSize > 1
+            if (params.get("ackBatchSize") instanceof Integer) {
+                ackBatchSize = (Integer)params.get("ackBatchSize");
+            }
+            if (ackBatchSize <= 0) {
+                ackBatchSize = 1;
+            }
+            if (params.get("ackBatchDelay") instanceof Integer) {
+                ackBatchDelay = (Integer)params.get("ackBatchDelay");
+            }
+            if (ackBatchDelay <= 0) {
+                ackBatchDelay = 20;
+            }
+            
+            adaptivePrefetchEnabled = Boolean.TRUE.equals(params.get("adaptivePrefetchEnabled"));
+            if (params.get("prefetchMin") instanceof Integer) {
+                prefetchMin = (Integer)params.get("prefetchMin");
+            }
+            if (prefetchMin <= 0) {
+                prefetchMin = 1;
+            }
+            if (params.get("prefetchMax") instanceof Integer) {
+                prefetchMax = (Integer)params.get("prefetchMax");
+            }
+            if (prefetchMax < prefetchMin) {
+                prefetchMax = Math.max(prefetchMin, 1000);
+            }
+            
+            // the bodies smaller than codecThreshold are sent as they are
+            if (params.get("codec") instanceof String) {
+                codec = OpflowCodec.getCodec((String)params.get("codec"));
+            }
+            if (params.get("codecThreshold") instanceof Integer) {
+                codecThreshold = (Integer)params.get("codecThreshold");
+            } else {
+                codecThreshold = 8192;
+            }
+            
+            adminPool = new OpflowChannelPool(logTracer, engineId, "admin",
+                    1, adminChannelPoolSize, DEFAULT_CHANNEL_WAIT_TIMEOUT,
+                    new OpflowChannelPool.Handler() {
+                @Override
+                public Connection newConnection(int connectionIndex) throws IOException, TimeoutException {
+                    return newSharedConnection("admin", connectionIndex);
+                }
+                
+                @Override
+                public Object initChannel(Channel channel) throws IOException {
+                    return null;
+                }
+            });
+            
             this.assertConnection();
+            
+            Integer producingConnectionPoolSize = null;
+            if (params.get("producingConnectionPoolSize") instanceof Integer) {
+                producingConnectionPoolSize = (Integer)params.get("producingConnectionPoolSize");
+            }
+            if (producingConnectionPoolSize == null || producingConnectionPoolSize <= 0) {
+                producingConnectionPoolSize = 1;
+            }
+            
+            Integer producingChannelPoolSize = null;
+            if (params.get("producingChannelPoolSize") instanceof Integer) {
+                producingChannelPoolSize = (Integer)params.get("producingChannelPoolSize");
+            }
+            if (producingChannelPoolSize == null || producingChannelPoolSize <= 0) {
+                producingChannelPoolSize = 4;
+            }
+            
+            Integer producingChannelWaitTimeout = null;
+            if (params.get("producingChannelWaitTimeout") instanceof Integer) {
+                producingChannelWaitTimeout = (Integer)params.get("producingChannelWaitTimeout");
+            }
+            if (producingChannelWaitTimeout == null || producingChannelWaitTimeout <= 0) {
+                producingChannelWaitTimeout = DEFAULT_CHANNEL_WAIT_TIMEOUT;
+            }
+            
+            final boolean confirmationEnabled = Boolean.TRUE.equals(params.get("confirmationEnabled"));
+            
+            Integer confirmationLimit = null;
+            if (params.get("confirmationLimit") instanceof Integer) {
+                confirmationLimit = (Integer)params.get("confirmationLimit");
+            }
+            if (confirmationLimit == null || confirmationLimit <= 0) {
+                confirmationLimit = 1024;
+            }
+            
+            if (logTracer.ready(LOG, "info")) LOG.info(logTracer
+                    .put("confirmationEnabled", confirmationEnabled)
+                    .put("confirmationLimit", confirmationLimit)
+                    .text("Engine[${engineId}] publisher confirms enabled: ${confirmationEnabled}, limit: ${confirmationLimit}")
+                    .stringify());
+            
+            final int _confirmationLimit = confirmationLimit;
+            final long _confirmationTimeout = producingChannelWaitTimeout;
+            producingPool = new OpflowChannelPool(logTracer, engineId, "producing",
+                    producingConnectionPoolSize, producingChannelPoolSize, producingChannelWaitTimeout,
+                    new OpflowChannelPool.Handler() {
+                @Override
+                public Connection newConnection(int connectionIndex) throws IOException, TimeoutException {
+                    return newSharedConnection("producing", connectionIndex);
+                }
+                
+                @Override
+                public Object initChannel(Channel channel) throws IOException {
+                    if (!confirmationEnabled) return null;
+                    channel.confirmSelect();
+                    OpflowConfirmTracker tracker = new OpflowConfirmTracker(_confirmationLimit, _confirmationTimeout);
+                    channel.addConfirmListener(tracker);
+                    channel.addShutdownListener(tracker);
+                    return tracker;
+                }
+            });
         } catch (IOException | URISyntaxException | KeyManagementException | NoSuchAlgorithmException | TimeoutException exception) {
             if (logTracer.ready(LOG, "error")) LOG.error(logTracer
                     .put("exceptionClass", exception.getClass().getName())
@@ -328,7 +515,12 @@ public class OpflowEngine implements AutoCloseable {
             if (exchangeDurable == null) exchangeDurable = true;
             
             if (exchangeName != null) {
-                getProducingChannel().exchangeDeclare(exchangeName, exchangeType, exchangeDurable);
+                OpflowChannelPool.Slot slot = producingPool.acquire();
+                try {
+                    slot.getChannel().exchangeDeclare(exchangeName, exchangeType, exchangeDurable);
+                } finally {
+                    producingPool.release(slot);
+                }
             }
             
             if (params.get("routingKey") instanceof String) {
@@ -394,50 +586,45 @@ public class OpflowEngine implements AutoCloseable {
     public String getApplicationId() {
         return applicationId;
     }
+
+    public int getDeclarationCacheTtl() {
+        return declarationCacheTtl;
+    }
+    
+    public OpflowCodec getCodec() {
+        return codec;
+    }
     
-    public void produce(final byte[] body, final Map<String, Object> headers) {
-        produce(body, headers, null, null);
+    public int getCodecThreshold() {
+        return codecThreshold;
     }
     
-    public void produce(final byte[] body, final Map<String, Object> headers, AMQP.BasicProperties.Builder propBuilder) {
-        produce(body, headers, propBuilder, null);
+    public CompletableFuture<Boolean> produce(final byte[] body, final Map<String, Object> headers) {
+        return produce(body, headers, null, null);
     }
     
-    public void produce(final byte[] body, final Map<String, Object> headers, Map<String, Object> override) {
-        produce(body, headers, null, override);
+    public CompletableFuture<Boolean> produce(final byte[] body, final Map<String, Object> headers, AMQP.BasicProperties.Builder propBuilder) {
+        return produce(body, headers, propBuilder, null);
     }
     
-    public void produce(final byte[] body, final Map<String, Object> headers, AMQP.BasicProperties.Builder propBuilder, Map<String, Object> override) {
+    public CompletableFuture<Boolean> produce(final byte[] body, final Map<String, Object> headers, Map<String, Object> override) {
+        return produce(body, headers, null, override);
+    }
+    
+    /**
+     * Publishes a message to the exchange of this engine. The returned future
+     * completes with true/false when the broker acks/nacks the message, or
+     * immediately with true if the publisher confirms are not enabled.
+     */
+    public CompletableFuture<Boolean> produce(final byte[] body, final Map<String, Object> headers, AMQP.BasicProperties.Builder propBuilder, Map<String, Object> override) {
         propBuilder = (propBuilder == null) ? new AMQP.BasicProperties.Builder() : propBuilder;
         OpflowLogTracer logProduce = null;
         
         try {
-            String customKey = this.routingKey;
-            if (override != null && override.get("routingKey") != null) {
-                customKey = (String) override.get("routingKey");
-            }
-            
-            String appId = this.applicationId;
-            if (override != null && override.get("applicationId") != null) {
-                appId = (String) override.get("applicationId");
-            }
-            propBuilder.appId(appId);
-            
-            if (override != null && override.get("correlationId") != null) {
-                propBuilder.correlationId(override.get("correlationId").toString());
-            }
-            
-            if (override != null && override.get("replyTo") != null) {
-                propBuilder.replyTo(override.get("replyTo").toString());
-            }
-            
-            headers.put("publishedTime", OpflowUtil.getCurrentTimeString());
-            
-            String requestId = OpflowUtil.getRequestId(headers, false);
-            if (requestId == null) {
-                headers.put("requestId", requestId = OpflowUtil.getLogID());
-            }
-            propBuilder.headers(headers);
+            String customKey = getCustomKey(override);
+            String appId = getCustomAppId(override);
+            String requestId = prepareProperties(propBuilder, headers, appId, override);
+            byte[] payload = OpflowCodec.encode(codec, codecThreshold, propBuilder, body);
             
             if (logTracer.ready(LOG, "info")) {
                 logProduce = logTracer.branch("requestId", requestId, new OpflowLogTracer.OmitPingLogs(headers));
@@ -449,11 +636,25 @@ public class OpflowEngine implements AutoCloseable {
                     .text("Request[${requestId}] - Engine[${engineId}] - produce() is invoked")
                     .stringify());
             
-            Channel _channel = getProducingChannel();
-            if (_channel == null || !_channel.isOpen()) {
-                throw new OpflowOperationException("Channel is null or has been closed");
+            if (override != null && override.get("channel") instanceof Channel) {
+                // a direct reply-to request must be published on the channel of its reply consumer,
+                // the callers share this channel, their publishes are serialized by the lock of the channel
+                Channel _channel = (Channel) override.get("channel");
+                Object _channelLock = (override.get("channelLock") != null) ? override.get("channelLock") : _channel;
+                synchronized (_channelLock) {
+                    _channel.basicPublish(this.exchangeName, customKey, propBuilder.build(), payload);
+                }
+                return CompletableFuture.completedFuture(Boolean.TRUE);
+            }
+            
+            OpflowChannelPool.Slot slot = producingPool.acquire();
+            try {
+                CompletableFuture<Boolean> confirmation = publish(slot, customKey, propBuilder.build(), payload);
+                slot.countPublish(1);
+                return confirmation;
+            } finally {
+                producingPool.release(slot);
             }
-            _channel.basicPublish(this.exchangeName, customKey, propBuilder.build(), body);
         } catch (IOException exception) {
             if (logProduce != null && logProduce.ready(LOG, "error")) LOG.error(logProduce
                     .put("exceptionClass", exception.getClass().getName())
@@ -471,6 +672,163 @@ public class OpflowEngine implements AutoCloseable {
         }
     }
     
+    /**
+     * Publishes the messages back-to-back on a single leased channel, the info
+     * map of each message is used as its headers. The returned future completes
+     * with true when every message has been acked by the broker.
+     */
+    public CompletableFuture<Boolean> produceBatch(final Collection<OpflowMessage> messages, Map<String, Object> override) {
+        if (messages == null || messages.isEmpty()) {
+            return CompletableFuture.completedFuture(Boolean.TRUE);
+        }
+        OpflowLogTracer logProduce = null;
+        if (logTracer.ready(LOG, "info")) {
+            logProduce = logTracer.copy();
+        }
+        
+        try {
+            String customKey = getCustomKey(override);
+            String appId = getCustomAppId(override);
+            
+            if (logProduce != null && logProduce.ready(LOG, "info")) LOG.info(logProduce
+                    .put("appId", appId)
+                    .put("customKey", customKey)
+                    .put("messageTotal", messages.size())
+                    .text("Engine[${engineId}] - produceBatch() is invoked with ${messageTotal} messages")
+                    .stringify());
+            
+            List<CompletableFuture<Boolean>> confirmations = null;
+            OpflowChannelPool.Slot slot = producingPool.acquire();
+            try {
+                if (slot.getAttachment() != null) {
+                    confirmations = new ArrayList<>(messages.size());
+                }
+                for (OpflowMessage message : messages) {
+                    Map<String, Object> headers = (message.getInfo() != null) ? new HashMap<>(message.getInfo()) : new HashMap<String, Object>();
+                    AMQP.BasicProperties.Builder propBuilder = new AMQP.BasicProperties.Builder();
+                    prepareProperties(propBuilder, headers, appId, override);
+                    byte[] payload = OpflowCodec.encode(codec, codecThreshold, propBuilder, message.getBody());
+                    CompletableFuture<Boolean> confirmation = publish(slot, customKey, propBuilder.build(), payload);
+                    if (confirmations != null) confirmations.add(confirmation);
+                }
+                slot.countPublish(messages.size());
+            } finally {
+                producingPool.release(slot);
+            }
+            
+            if (confirmations == null) {
+                return CompletableFuture.completedFuture(Boolean.TRUE);
+            }
+            final List<CompletableFuture<Boolean>> _confirmations = confirmations;
+            return CompletableFuture.allOf(_confirmations.toArray(new CompletableFuture[_confirmations.size()]))
+                    .thenApply(new Function<Void, Boolean>() {
+                @Override
+                public Boolean apply(Void ignored) {
+                    for (CompletableFuture<Boolean> confirmation : _confirmations) {
+                        if (!Boolean.TRUE.equals(confirmation.join())) return Boolean.FALSE;
+                    }
+                    return Boolean.TRUE;
+                }
+            });
+        } catch (IOException exception) {
+            if (logProduce != null && logProduce.ready(LOG, "error")) LOG.error(logProduce
+                    .put("exceptionClass", exception.getClass().getName())
+                    .put("exceptionMessage", exception.getMessage())
+                    .text("Engine[${engineId}] - produceBatch() has failed")
+                    .stringify());
+            throw new OpflowOperationException(exception);
+        } catch (TimeoutException exception) {
+            if (logProduce != null && logProduce.ready(LOG, "error")) LOG.error(logProduce
+                    .put("exceptionClass", exception.getClass().getName())
+                    .put("exceptionMessage", exception.getMessage())
+                    .text("Engine[${engineId}] - produceBatch() is timeout")
+                    .stringify());
+            throw new OpflowOperationException(exception);
+        }
+    }
+    
+    private String getCustomKey(Map<String, Object> override) {
+        if (override != null && override.get("routingKey") != null) {
+            return (String) override.get("routingKey");
+        }
+        return this.routingKey;
+    }
+    
+    private OpflowAckCoalescer getAckCoalescer(final Channel channel) {
+        synchronized (ackCoalescers) {
+            OpflowAckCoalescer ackCoalescer = ackCoalescers.get(channel);
+            if (ackCoalescer == null) {
+                ackCoalescer = new OpflowAckCoalescer(logTracer, channel, ackBatchSize, ackBatchDelay);
+                ackCoalescers.put(channel, ackCoalescer);
+                channel.addShutdownListener(new ShutdownListener() {
+                    @Override
+                    public void shutdownCompleted(ShutdownSignalException sse) {
+                        synchronized (ackCoalescers) {
+                            ackCoalescers.remove(channel);
+                        }
+                    }
+                });
+            }
+            return ackCoalescer;
+        }
+    }
+    
+    private static OpflowLogTracer branchRequestTracer(OpflowLogTracer parent, AMQP.BasicProperties properties) {
+        Map<String, Object> headers = properties.getHeaders();
+        return parent.branch("requestId", OpflowUtil.getRequestId(headers, false), new OpflowLogTracer.OmitPingLogs(headers));
+    }
+    
+    private String getCustomAppId(Map<String, Object> override) {
+        if (override != null && override.get("applicationId") != null) {
+            return (String) override.get("applicationId");
+        }
+        return this.applicationId;
+    }
+    
+    private String prepareProperties(AMQP.BasicProperties.Builder propBuilder, Map<String, Object> headers,
+            String appId, Map<String, Object> override) {
+        propBuilder.appId(appId);
+        
+        if (override != null && override.get("correlationId") != null) {
+            propBuilder.correlationId(override.get("correlationId").toString());
+        }
+        
+        if (override != null && override.get("replyTo") != null) {
+            propBuilder.replyTo(override.get("replyTo").toString());
+        }
+        
+        headers.put("publishedTime", OpflowUtil.getCurrentTimeString());
+        
+        String requestId = OpflowUtil.getRequestId(headers, false);
+        if (requestId == null) {
+            headers.put("requestId", requestId = OpflowUtil.getLogID());
+        }
+        propBuilder.headers(headers);
+        return requestId;
+    }
+    
+    private CompletableFuture<Boolean> publish(OpflowChannelPool.Slot slot, String customKey,
+            AMQP.BasicProperties props, byte[] body) throws IOException, TimeoutException {
+        Channel _channel = slot.getChannel();
+        if (_channel == null || !_channel.isOpen()) {
+            throw new OpflowOperationException("Channel is null or has been closed");
+        }
+        OpflowConfirmTracker tracker = (OpflowConfirmTracker) slot.getAttachment();
+        if (tracker == null) {
+            _channel.basicPublish(this.exchangeName, customKey, props, body);
+            return CompletableFuture.completedFuture(Boolean.TRUE);
+        }
+        long seqNo = _channel.getNextPublishSeqNo();
+        CompletableFuture<Boolean> confirmation = tracker.register(seqNo);
+        try {
+            _channel.basicPublish(this.exchangeName, customKey, props, body);
+        } catch (IOException | RuntimeException exception) {
+            tracker.cancel(seqNo, exception);
+            throw exception;
+        }
+        return confirmation;
+    }
+    
     public ConsumerInfo consume(final OpflowListener listener, final Map<String, Object> options) {
         final Map<String, Object> opts = OpflowUtil.ensureNotNull(options);
         final String _consumerId = OpflowUtil.getOptionField(opts, "consumerId", true);
@@ -480,8 +838,23 @@ public class OpflowEngine implements AutoCloseable {
                 .text("Consumer[${consumerId}].consume() is invoked in Engine[${engineId}]")
                 .stringify());
         try {
+            // the direct reply-to pseudo-queue is neither declared nor acked
+            final boolean _directReplyTo = Boolean.TRUE.equals(opts.get("directReplyTo"));
+            
+            final Boolean _autoAck;
+            if (_directReplyTo) {
+                _autoAck = Boolean.TRUE;
+            } else if (opts.get("autoAck") != null && opts.get("autoAck") instanceof Boolean) {
+                _autoAck = (Boolean) opts.get("autoAck");
+            } else {
+                _autoAck = Boolean.TRUE;
+            }
+            
+            // the adaptive prefetch retunes a channel-wide limit, it needs a channel of its own
+            final boolean _adaptivePrefetch = adaptivePrefetchEnabled && !_autoAck;
+            
             final boolean _forceNewConnection = Boolean.TRUE.equals(opts.get("forceNewConnection"));
-            final Boolean _forceNewChannel = Boolean.TRUE.equals(opts.get("forceNewChannel"));
+            final Boolean _forceNewChannel = Boolean.TRUE.equals(opts.get("forceNewChannel")) || _adaptivePrefetch;
             final Channel _channel = getConsumingChannel(_forceNewConnection, _forceNewChannel);
             final Connection _connection = _channel.getConnection();
             
@@ -489,8 +862,19 @@ public class OpflowEngine implements AutoCloseable {
             if (opts.get("prefetch") instanceof Integer) {
                 _prefetch = (Integer) opts.get("prefetch");
             }
-            if (_prefetch != null && _prefetch > 0) {
-                _channel.basicQos(_prefetch);
+            final OpflowPrefetchController _prefetchController;
+            if (_directReplyTo) {
+                _prefetchController = null;
+            } else if (_adaptivePrefetch) {
+                Integer _parallelism = (opts.get("parallelism") instanceof Integer) ? (Integer) opts.get("parallelism") : 1;
+                _prefetchController = new OpflowPrefetchController(logConsume, engineId, _consumerId, _channel,
+                        (_prefetch != null) ? _prefetch : prefetchMin, _parallelism, prefetchMin, prefetchMax);
+                _prefetchController.start();
+            } else {
+                _prefetchController = null;
+                if (_prefetch != null && _prefetch > 0) {
+                    _channel.basicQos(_prefetch);
+                }
             }
             
             final String _queueName;
@@ -500,21 +884,26 @@ public class OpflowEngine implements AutoCloseable {
             final boolean opts_exclusive = Boolean.TRUE.equals(opts.get("exclusive"));
             final boolean opts_autoDelete = Boolean.TRUE.equals(opts.get("autoDelete"));
             AMQP.Queue.DeclareOk _declareOk;
-            if (opts_queueName != null) {
+            if (_directReplyTo) {
+                _declareOk = null;
+                _fixedQueue = true;
+                _queueName = DIRECT_REPLY_TO;
+            } else if (opts_queueName != null) {
                 _declareOk = _channel.queueDeclare(opts_queueName, opts_durable, opts_exclusive, opts_autoDelete, null);
                 _fixedQueue = true;
+                _queueName = _declareOk.getQueue();
             } else {
                 _declareOk = _channel.queueDeclare();
                 _fixedQueue = false;
+                _queueName = _declareOk.getQueue();
             }
-            _queueName = _declareOk.getQueue();
             final Integer _consumerLimit = (Integer) opts.get("consumerLimit");
-            if (logConsume.ready(LOG, "trace")) LOG.trace(logConsume
+            if (_declareOk != null && logConsume.ready(LOG, "trace")) LOG.trace(logConsume
                     .put("consumerCount", _declareOk.getConsumerCount())
                     .put("consumerLimit", _consumerLimit)
                     .text("Consumer[${consumerId}].consume() - consumerCount(${consumerCount})/consumerLimit(${consumerLimit})")
                     .stringify());
-            if (_consumerLimit != null && _consumerLimit > 0) {
+            if (_declareOk != null && _consumerLimit != null && _consumerLimit > 0) {
                 if (_declareOk.getConsumerCount() >= _consumerLimit) {
                     if (logConsume.ready(LOG, "error")) LOG.error(logConsume
                             .put("consumerCount", _declareOk.getConsumerCount())
@@ -528,11 +917,16 @@ public class OpflowEngine implements AutoCloseable {
             
             final Boolean _binding = (Boolean) opts.get("binding");
             if (!Boolean.FALSE.equals(_binding) && exchangeName != null) {
-                if (routingKey != null) {
-                    bindExchange(_channel, exchangeName, _queueName, routingKey);
-                }
-                if (otherKeys != null) {
-                    bindExchange(_channel, exchangeName, _queueName, otherKeys);
+                // the given binding keys replace the ones of the engine
+                if (opts.get("bindingKeys") instanceof String[]) {
+                    bindExchange(_channel, exchangeName, _queueName, (String[]) opts.get("bindingKeys"));
+                } else {
+                    if (routingKey != null) {
+                        bindExchange(_channel, exchangeName, _queueName, routingKey);
+                    }
+                    if (otherKeys != null) {
+                        bindExchange(_channel, exchangeName, _queueName, otherKeys);
+                    }
                 }
             }
             
@@ -544,13 +938,6 @@ public class OpflowEngine implements AutoCloseable {
                 _replyToName = null;
             }
             
-            final Boolean _autoAck;
-            if (opts.get("autoAck") != null && opts.get("autoAck") instanceof Boolean) {
-                _autoAck = (Boolean) opts.get("autoAck");
-            } else {
-                _autoAck = Boolean.TRUE;
-            }
-            
             final Boolean _requeueFailure;
             if (opts.get("requeueFailure") != null && opts.get("requeueFailure") instanceof Boolean) {
                 _requeueFailure = (Boolean) opts.get("requeueFailure");
@@ -558,9 +945,21 @@ public class OpflowEngine implements AutoCloseable {
                 _requeueFailure = Boolean.FALSE;
             }
             
+            // deliveries may be handed off to a dispatcher, the permits bound the number of pending ones
+            final Executor _dispatcher = (opts.get("dispatcher") instanceof Executor) ? (Executor) opts.get("dispatcher") : null;
+            final Semaphore _dispatchPermits = (opts.get("dispatchPermits") instanceof Semaphore) ? (Semaphore) opts.get("dispatchPermits") : null;
+            
+            final OpflowAckCoalescer _ackCoalescer = (!_autoAck && ackBatchSize > 1) ? getAckCoalescer(_channel) : null;
+            
             final Consumer _consumer = new DefaultConsumer(_channel) {
                 private void invokeAck(Envelope envelope, boolean success) throws IOException {
-                    if (!_autoAck) {
+                    if (!_autoAck && _ackCoalescer != null) {
+                        if (success || !_requeueFailure) {
+                            _ackCoalescer.ack(envelope.getDeliveryTag());
+                        } else {
+                            _ackCoalescer.nack(envelope.getDeliveryTag(), true);
+                        }
+                    } else if (!_autoAck) {
                         if (success) {
                             _channel.basicAck(envelope.getDeliveryTag(), false);
                         } else {
@@ -573,11 +972,53 @@ public class OpflowEngine implements AutoCloseable {
                     }
                 }
                 @Override
-                public void handleDelivery(String consumerTag, Envelope envelope,
-                                           AMQP.BasicProperties properties, byte[] body) throws IOException {
-                    final String requestID = OpflowUtil.getRequestId(properties.getHeaders(), false);
-                    
-                    final OpflowLogTracer logRequest = logConsume.branch("requestId", requestID, new OpflowLogTracer.OmitPingLogs(properties.getHeaders()));
+                public void handleDelivery(final String consumerTag, final Envelope envelope,
+                                           final AMQP.BasicProperties properties, final byte[] body) throws IOException {
+                    if (_ackCoalescer != null) {
+                        _ackCoalescer.track(envelope.getDeliveryTag());
+                    }
+                    if (_dispatcher == null) {
+                        deliver(consumerTag, envelope, properties, body);
+                        return;
+                    }
+                    if (_dispatchPermits != null) {
+                        try {
+                            _dispatchPermits.acquire();
+                        } catch (InterruptedException exception) {
+                            Thread.currentThread().interrupt();
+                            invokeAck(envelope, false);
+                            return;
+                        }
+                    }
+                    try {
+                        _dispatcher.execute(new Runnable() {
+                            @Override
+                            public void run() {
+                                try {
+                                    deliver(consumerTag, envelope, properties, body);
+                                } catch (IOException | RuntimeException exception) {
+                                    if (logConsume.ready(LOG, "error")) LOG.error(logConsume
+                                            .put("deliveryTag", envelope.getDeliveryTag())
+                                            .put("exceptionClass", exception.getClass().getName())
+                                            .put("exceptionMessage", exception.getMessage())
+                                            .text("Consumer[${consumerId}] - the dispatched delivery has failed")
+                                            .stringify());
+                                } finally {
+                                    if (_dispatchPermits != null) _dispatchPermits.release();
+                                }
+                            }
+                        });
+                    } catch (RejectedExecutionException exception) {
+                        if (_dispatchPermits != null) _dispatchPermits.release();
+                        invokeAck(envelope, false);
+                    }
+                }
+                
+                private void deliver(String consumerTag, Envelope envelope,
+                                     AMQP.BasicProperties properties, byte[] body) throws IOException {
+                    // the tracer is only branched when the logs are enabled, nothing is allocated otherwise
+                    final OpflowLogTracer logRequest = (logConsume.ready(LOG, "info") || logConsume.ready(LOG, "trace")) ?
+                            branchRequestTracer(logConsume, properties) : null;
                     
                     if (logRequest != null && logRequest.ready(LOG, "info")) LOG.info(logRequest
                             .put("appId", properties.getAppId())
@@ -600,12 +1041,20 @@ public class OpflowEngine implements AutoCloseable {
                     }
                     
                     try {
+                        // the listeners always receive the decoded body
+                        byte[] content = OpflowCodec.decode(properties.getContentEncoding(), body);
                         if (applicationId == null || applicationId.equals(properties.getAppId())) {
                             if (logRequest != null && logRequest.ready(LOG, "trace")) LOG.trace(logRequest
                                     .text("Request[${requestId}] invoke listener.processMessage()")
                                     .stringify());
                             
-                            boolean captured = listener.processMessage(body, properties, _replyToName, _channel, consumerTag);
+                            long begin = (_prefetchController != null) ? System.nanoTime() : 0;
+                            
+                            boolean captured = listener.processMessage(content, properties, _replyToName, _channel, consumerTag);
+                            
+                            if (_prefetchController != null) {
+                                _prefetchController.record(System.nanoTime() - begin);
+                            }
                             
                             if (captured) {
                                 if (logRequest != null && logRequest.ready(LOG, "info")) LOG.info(logRequest
@@ -631,9 +1080,14 @@ public class OpflowEngine implements AutoCloseable {
                                     .stringify());
                             invokeAck(envelope, false);
                         }
-                    } catch (IOException ex) {
+                    } catch (IOException | RuntimeException ex) {
                         // catch ALL of Error here: don't let it harm our service/close the channel
-                        if (logRequest != null && logRequest.ready(LOG, "error")) LOG.error(logRequest
+                        // nor leave the delivery unsettled (it holds a prefetch slot and the ack batch)
+                        OpflowLogTracer logFailure = logRequest;
+                        if (logFailure == null && logConsume.ready(LOG, "error")) {
+                            logFailure = branchRequestTracer(logConsume, properties);
+                        }
+                        if (logFailure != null && logFailure.ready(LOG, "error")) LOG.error(logFailure
                                 .put("deliveryTag", envelope.getDeliveryTag())
                                 .put("consumerTag", consumerTag)
                                 .put("exceptionClass", ex.getClass().getName())
@@ -698,15 +1152,20 @@ public class OpflowEngine implements AutoCloseable {
     
     public <T> T acquireChannel(Operator listener) throws IOException, TimeoutException {
         T output = null;
-        Connection _connection = null;
-        Channel _channel = null;
+        boolean broken = false;
+        OpflowChannelPool.Slot slot = adminPool.acquire();
         try {
-            _connection = factory.newConnection();
-            _channel = _connection.createChannel();
-            if (listener != null) output = (T) listener.handleEvent(_channel);
+            if (listener != null) output = (T) listener.handleEvent(slot.getChannel());
+        } catch (IOException | RuntimeException exception) {
+            // a channel-level error (i.e. a failed passive declare) closes the channel
+            broken = true;
+            throw exception;
         } finally {
-            if (_channel != null && _channel.isOpen()) _channel.close();
-            if (_connection != null && _connection.isOpen()) _connection.close();
+            if (broken) {
+                adminPool.discard(slot);
+            } else {
+                adminPool.release(slot);
+            }
         }
         return output;
     }
@@ -721,6 +1180,14 @@ public class OpflowEngine implements AutoCloseable {
                     .stringify());
 
             consumerInfo.getChannel().basicCancel(consumerInfo.getConsumerTag());
+            
+            OpflowAckCoalescer ackCoalescer;
+            synchronized (ackCoalescers) {
+                ackCoalescer = ackCoalescers.get(consumerInfo.getChannel());
+            }
+            if (ackCoalescer != null) {
+                ackCoalescer.flush();
+            }
 
             if (logCancel.ready(LOG, "debug")) LOG.debug(logCancel
                     .text("Consumer[${consumerId}].cancelConsumer() - consumer has been cancelled")
@@ -853,7 +1320,7 @@ public class OpflowEngine implements AutoCloseable {
     }
     
     public State check() {
-        int conn = producingConnection.isOpen() ? State.CONNECTION_OPENED : State.CONNECTION_CLOSED;
+        int conn = producingPool.isOpen() ? State.CONNECTION_OPENED : State.CONNECTION_CLOSED;
         State state = new State(conn);
         return state;
     }
@@ -867,21 +1334,13 @@ public class OpflowEngine implements AutoCloseable {
     public void close() {
         try {
             if (logTracer.ready(LOG, "info")) LOG.info(logTracer
-                .text("Engine[${engineId}].close() - close producingChannel, producingConnection")
+                .text("Engine[${engineId}].close() - close producing channels and connections")
                 .stringify());
-            if (producingChannel != null && producingChannel.isOpen()) {
-                if (logTracer.ready(LOG, "info")) LOG.info(logTracer
-                        .tags("sharedProducingChannelClosed")
-                        .text("Engine[${engineId}].close() shared producingChannel is closing")
-                        .stringify());
-                producingChannel.close();
+            if (producingPool != null) {
+                producingPool.close();
             }
-            if (producingConnection != null && producingConnection.isOpen()) {
-                if (logTracer.ready(LOG, "info")) LOG.info(logTracer
-                        .tags("sharedProducingConnectionClosed")
-                        .text("Engine[${engineId}].close() shared producingConnection is closing")
-                        .stringify());
-                producingConnection.close();
+            if (adminPool != null) {
+                adminPool.close();
             }
             
             if ("engine".equals(mode)) {
@@ -939,50 +1398,57 @@ public class OpflowEngine implements AutoCloseable {
         return (conn != null) ? conn.getId() : null;
     }
     
-    private Connection getProducingConnection() throws IOException, TimeoutException {
-        if (producingConnection == null || !producingConnection.isOpen()) {
-            producingConnection = factory.newConnection();
-            producingConnection.setId(OpflowUtil.getLogID());
-            producingConnection.addShutdownListener(new ShutdownListener() {
-                private final OpflowLogTracer localLog = logTracer.copy();
-                @Override
-                public void shutdownCompleted(ShutdownSignalException sse) {
-                    if (localLog.ready(LOG, "info")) LOG.info(localLog
-                            .put("connectionId", getConnectionId(producingConnection))
-                            .text("Engine[${engineId}] producingConnection[${connectionId}] has been shutdown")
-                            .stringify());
-                }
-            });
-            if (logTracer.ready(LOG, "info")) LOG.info(logTracer
-                    .tags("sharedProducingConnectionCreated")
-                    .put("connectionId", getConnectionId(producingConnection))
-                    .text("Engine[${engineId}]shared producingConnection[${connectionId}] is created")
-                    .stringify(true));
-            exporter.incEngineConnectionGauge(factory, "producing");
+    /**
+     * Creates the executors which suit the blocking handlers: a thread per task
+     * executor of virtual threads (JDK 21+, falls back to a cached thread pool
+     * on older runtimes) or a work-stealing pool. Returns null for other types.
+     */
+    static ExecutorService newExecutorService(String type, int parallelism) {
+        if ("virtual".equals(type)) {
+            try {
+                // resolved by reflection, the source level stays compatible with older JDKs
+                return (ExecutorService) Executors.class.getMethod("newVirtualThreadPerTaskExecutor").invoke(null);
+            } catch (ReflectiveOperationException exception) {
+                if (OpflowLogTracer.has(LOG, "warn")) LOG.warn("Virtual threads are not supported by this JVM, use a cached thread pool");
+                return Executors.newCachedThreadPool();
+            }
         }
-        return producingConnection;
+        if ("workstealing".equals(type)) {
+            return Executors.newWorkStealingPool(Math.max(1, parallelism));
+        }
+        return null;
     }
     
-    private Channel getProducingChannel() throws IOException, TimeoutException {
-        if (producingChannel == null || !producingChannel.isOpen()) {
-            producingChannel = getProducingConnection().createChannel();
-            producingChannel.addShutdownListener(new ShutdownListener() {
-                private final OpflowLogTracer localLog = logTracer.copy();
-                @Override
-                public void shutdownCompleted(ShutdownSignalException sse) {
-                    if (localLog.ready(LOG, "info")) LOG.info(localLog
-                            .put("channelNumber", producingChannel.getChannelNumber())
-                            .text("Engine[${engineId}] producingChannel[${channelNumber}] has been shutdown")
-                            .stringify());
-                }
-            });
-            if (logTracer.ready(LOG, "info")) LOG.info(logTracer
-                    .tags("sharedProducingChannelCreated")
-                    .put("channelNumber", producingChannel.getChannelNumber())
-                    .text("Engine[${engineId}] shared producingChannel[${channelNumber}] is created")
-                    .stringify());
+    private Connection newConnection() throws IOException, TimeoutException {
+        if (addressResolver != null) {
+            return addressResolver.newConnection(factory);
         }
-        return producingChannel;
+        return factory.newConnection();
+    }
+    
+    private Connection newSharedConnection(final String connectionType, int connectionIndex) throws IOException, TimeoutException {
+        final Connection connection = newConnection();
+        connection.setId(OpflowUtil.getLogID());
+        connection.addShutdownListener(new ShutdownListener() {
+            private final OpflowLogTracer localLog = logTracer.copy();
+            @Override
+            public void shutdownCompleted(ShutdownSignalException sse) {
+                if (localLog.ready(LOG, "info")) LOG.info(localLog
+                        .put("connectionType", connectionType)
+                        .put("connectionId", getConnectionId(connection))
+                        .text("Engine[${engineId}] ${connectionType} connection[${connectionId}] has been shutdown")
+                        .stringify());
+            }
+        });
+        if (logTracer.ready(LOG, "info")) LOG.info(logTracer
+                .tags("sharedConnectionCreated")
+                .put("connectionType", connectionType)
+                .put("connectionIndex", connectionIndex)
+                .put("connectionId", getConnectionId(connection))
+                .text("Engine[${engineId}] shared ${connectionType} connection[${connectionId}] is created at index ${connectionIndex}")
+                .stringify(true));
+        exporter.incEngineConnectionGauge(factory, connectionType);
+        return connection;
     }
     
     private Connection getConsumingConnection(boolean forceNewConnection) throws IOException, TimeoutException {
@@ -991,10 +1457,10 @@ public class OpflowEngine implements AutoCloseable {
                     .tags("privateConsumingConnectionCreated")
                     .text("Engine[${engineId}] private consumingConnection is created")
                     .stringify());
-            return factory.newConnection();
+            return newConnection();
         }
         if (consumingConnection == null || !consumingConnection.isOpen()) {
-            consumingConnection = factory.newConnection();
+            consumingConnection = newConnection();
             consumingConnection.setId(OpflowUtil.getLogID());
             consumingConnection.addShutdownListener(new ShutdownListener() {
                 private final OpflowLogTracer localLog = logTracer.copy();
@@ -5,6 +5,8 @@ import com.devebot.opflow.exception.OpflowOperationException;
 import com.rabbitmq.client.AMQP;
 import com.rabbitmq.client.Channel;
 import java.io.IOException;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.TimeoutException;
 
 /**
@@ -13,6 +15,7 @@ import java.util.concurrent.TimeoutException;
  */
 public class OpflowExecutor {
     private final OpflowEngine engine;
+    private final Map<String, Declaration> declarations = new ConcurrentHashMap<>();
     
     public OpflowExecutor(OpflowEngine engine) {
         this.engine = engine;
@@ -27,7 +30,7 @@ public class OpflowExecutor {
             if (durable == null) durable = true;
             if (exclusive == null) exclusive = false;
             if (autoDelete == null) autoDelete = false;
-            declareQueue(queueName, durable, exclusive, autoDelete);
+            declareQueue(queueName, durable, exclusive, autoDelete, true);
         } catch (IOException | TimeoutException ioe) {
             throw new OpflowBootstrapException(ioe);
         }
@@ -35,7 +38,7 @@ public class OpflowExecutor {
     
     public int countQueue(final String queueName) {
         try {
-            return declareQueue(queueName, true, false, false).getMessageCount();
+            return declareQueue(queueName, true, false, false, false).getMessageCount();
         } catch (IOException | TimeoutException exception) {
             throw new OpflowOperationException(exception);
         }
@@ -45,38 +48,57 @@ public class OpflowExecutor {
         return defineQueue(queueName, null, null, null);
     }
     
+    /**
+     * Declares the queue on the broker each time, so that the message and
+     * consumer counts of the result are current.
+     */
     public AMQP.Queue.DeclareOk defineQueue(final String queueName, Boolean durable, Boolean exclusive, Boolean autoDelete) {
         try {
             durable = (durable == null) ? true : durable;
             exclusive = (exclusive == null) ? false : exclusive;
             autoDelete = (autoDelete == null) ? false : autoDelete;
-            return declareQueue(queueName, durable, exclusive, autoDelete);
+            return declareQueue(queueName, durable, exclusive, autoDelete, false);
         } catch (IOException | TimeoutException exception) {
             throw new OpflowOperationException(exception);
         }
     }
     
-    private AMQP.Queue.DeclareOk declareQueue(final String queueName, final boolean durable, final boolean exclusive, final boolean autoDelete) throws IOException, TimeoutException {
+    /**
+     * A cached result only tells that the queue exists, its counts are the
+     * ones of the time of the declaration. The callers which read the counts
+     * pass cacheable=false, their fresh result refreshes the cache.
+     */
+    private AMQP.Queue.DeclareOk declareQueue(final String queueName, final boolean durable, final boolean exclusive, final boolean autoDelete,
+            boolean cacheable) throws IOException, TimeoutException {
         if (queueName == null) return null;
+        final String key = getQueueKey(queueName, durable, exclusive, autoDelete);
+        if (cacheable) {
+            AMQP.Queue.DeclareOk cached = (AMQP.Queue.DeclareOk) getDeclaration(key);
+            if (cached != null) return cached;
+        }
+        AMQP.Queue.DeclareOk result;
         try {
-            return engine.acquireChannel(new OpflowEngine.Operator() {
+            result = engine.acquireChannel(new OpflowEngine.Operator() {
                 @Override
                 public AMQP.Queue.DeclareOk handleEvent(Channel _channel) throws IOException {
                     return _channel.queueDeclarePassive(queueName);
                 }
             });
         } catch (IOException e1) {
-            return engine.acquireChannel(new OpflowEngine.Operator() {
+            result = engine.acquireChannel(new OpflowEngine.Operator() {
                 @Override
                 public AMQP.Queue.DeclareOk handleEvent(Channel _channel) throws IOException {
                     return _channel.queueDeclare(queueName, durable, exclusive, autoDelete, null);
                 }
             });
         }
+        putDeclaration(key, result);
+        return result;
     }
     
     public AMQP.Queue.PurgeOk purgeQueue(final String queueName) {
         if (queueName == null) return null;
+        removeQueueDeclarations(queueName);
         try {
             return engine.acquireChannel(new OpflowEngine.Operator() {
                 @Override
@@ -90,6 +112,7 @@ public class OpflowExecutor {
     }
     
     public AMQP.Queue.DeleteOk deleteQueue(final String queueName) {
+        removeQueueDeclarations(queueName);
         try {
             return engine.acquireChannel(new OpflowEngine.Operator() {
                 @Override
@@ -113,8 +136,11 @@ public class OpflowExecutor {
     private AMQP.Exchange.DeclareOk declareExchange(final String exchangeName, final String exchangeType)
             throws IOException, TimeoutException {
         if (exchangeName == null) return null;
+        final String key = "exchange:" + exchangeName;
+        AMQP.Exchange.DeclareOk result = (AMQP.Exchange.DeclareOk) getDeclaration(key);
+        if (result != null) return result;
         try {
-            return engine.acquireChannel(new OpflowEngine.Operator() {
+            result = engine.acquireChannel(new OpflowEngine.Operator() {
                 @Override
                 public AMQP.Exchange.DeclareOk handleEvent(Channel _channel) throws IOException {
                     return _channel.exchangeDeclarePassive(exchangeName);
@@ -122,16 +148,19 @@ public class OpflowExecutor {
             });
         } catch (IOException e1) {
             final String _type = (exchangeType != null) ? exchangeType : "direct";
-            return engine.acquireChannel(new OpflowEngine.Operator() {
+            result = engine.acquireChannel(new OpflowEngine.Operator() {
                 @Override
                 public AMQP.Exchange.DeclareOk handleEvent(Channel _channel) throws IOException {
                     return _channel.exchangeDeclare(exchangeName, _type, true, false, null);
                 }
             });
         }
+        putDeclaration(key, result);
+        return result;
     }
     
     public AMQP.Exchange.DeleteOk deleteExchange(final String exchangeName) {
+        declarations.remove("exchange:" + exchangeName);
         try {
             return engine.acquireChannel(new OpflowEngine.Operator() {
                 @Override
@@ -143,4 +172,45 @@ public class OpflowExecutor {
             throw new OpflowOperationException(exception);
         }
     }
+    
+    private Object getDeclaration(String key) {
+        Declaration declaration = declarations.get(key);
+        if (declaration == null) return null;
+        if (declaration.expiredTime < System.currentTimeMillis()) {
+            declarations.remove(key, declaration);
+            return null;
+        }
+        return declaration.declareOk;
+    }
+    
+    /**
+     * The arguments are part of the key, so that a declaration with other
+     * arguments is never served by the cached result of another one.
+     */
+    private static String getQueueKey(String queueName, boolean durable, boolean exclusive, boolean autoDelete) {
+        return "queue:" + (durable ? "D" : "-") + (exclusive ? "E" : "-") + (autoDelete ? "A" : "-") + ":" + queueName;
+    }
+    
+    private void removeQueueDeclarations(String queueName) {
+        for (int flags=0; flags<8; flags++) {
+            declarations.remove(getQueueKey(queueName, (flags & 1) != 0, (flags & 2) != 0, (flags & 4) != 0));
+        }
+    }
+    
+    private void putDeclaration(String key, Object declareOk) {
+        int ttl = engine.getDeclarationCacheTtl();
+        if (declareOk != null && ttl > 0) {
+            declarations.put(key, new Declaration(declareOk, System.currentTimeMillis() + ttl));
+        }
+    }
+    
+    private static class Declaration {
+        private final Object declareOk;
+        private final long expiredTime;
+        
+        Declaration(Object declareOk, long expiredTime) {
+            this.declareOk = declareOk;
+            this.expiredTime = expiredTime;
+        }
+    }
 }
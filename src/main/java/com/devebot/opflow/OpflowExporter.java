@@ -6,6 +6,7 @@ import com.rabbitmq.client.ConnectionFactory;
 import io.prometheus.client.CollectorRegistry;
 import io.prometheus.client.Counter;
 import io.prometheus.client.Gauge;
+import io.prometheus.client.Summary;
 import io.prometheus.client.exporter.HTTPServer;
 import io.prometheus.client.exporter.PushGateway;
 import io.prometheus.client.hotspot.DefaultExports;
@@ -178,6 +179,154 @@ public class OpflowExporter {
         finish(DEFAULT_PROM_PUSHGATEWAY_JOBNAME);
     }
     
+    private Gauge channelPoolSizeGauge;
+
+    private Gauge assertChannelPoolSizeGauge() {
+        if (channelPoolSizeGauge == null) {
+            Gauge.Builder builder = Gauge.build()
+            .name("opflow_channel_pool_size")
+            .help("Number of channels of the channel pools.")
+            .labelNames("engineId", "pool_type");
+            if (pushGateway != null) {
+                channelPoolSizeGauge = builder.register(pushRegistry);
+            } else {
+                channelPoolSizeGauge = builder.register();
+            }
+        }
+        return channelPoolSizeGauge;
+    }
+
+    public void setChannelPoolSize(String engineId, String poolType, int size) {
+        assertChannelPoolSizeGauge().labels(engineId, poolType).set(size);
+        finish(DEFAULT_PROM_PUSHGATEWAY_JOBNAME);
+    }
+
+    private Gauge channelPoolIdleGauge;
+
+    private Gauge assertChannelPoolIdleGauge() {
+        if (channelPoolIdleGauge == null) {
+            Gauge.Builder builder = Gauge.build()
+            .name("opflow_channel_pool_idle")
+            .help("Number of idle channels of the channel pools.")
+            .labelNames("engineId", "pool_type");
+            if (pushGateway != null) {
+                channelPoolIdleGauge = builder.register(pushRegistry);
+            } else {
+                channelPoolIdleGauge = builder.register();
+            }
+        }
+        return channelPoolIdleGauge;
+    }
+
+    public Gauge.Child getChannelPoolIdleGauge(String engineId, String poolType) {
+        return assertChannelPoolIdleGauge().labels(engineId, poolType);
+    }
+
+    private Summary channelCheckoutSummary;
+
+    private Summary assertChannelCheckoutSummary() {
+        if (channelCheckoutSummary == null) {
+            Summary.Builder builder = Summary.build()
+            .name("opflow_channel_checkout_seconds")
+            .help("Waiting time to checkout a channel from the channel pools.")
+            .labelNames("engineId", "pool_type");
+            if (pushGateway != null) {
+                channelCheckoutSummary = builder.register(pushRegistry);
+            } else {
+                channelCheckoutSummary = builder.register();
+            }
+        }
+        return channelCheckoutSummary;
+    }
+
+    public Summary.Child getChannelCheckoutSummary(String engineId, String poolType) {
+        return assertChannelCheckoutSummary().labels(engineId, poolType);
+    }
+
+    private Counter channelPublishCounter;
+
+    private Counter assertChannelPublishCounter() {
+        if (channelPublishCounter == null) {
+            Counter.Builder builder = Counter.build()
+            .name("opflow_channel_publish_total")
+            .help("The total of messages published on each pooled channel")
+            .labelNames("engineId", "pool_type", "channel_id");
+            if (pushGateway != null) {
+                channelPublishCounter = builder.register(pushRegistry);
+            } else {
+                channelPublishCounter = builder.register();
+            }
+        }
+        return channelPublishCounter;
+    }
+
+    public Counter.Child getChannelPublishCounter(String engineId, String poolType, int channelIndex) {
+        return assertChannelPublishCounter().labels(engineId, poolType, String.valueOf(channelIndex));
+    }
+
+    private Gauge consumerPrefetchGauge;
+
+    private Gauge assertConsumerPrefetchGauge() {
+        if (consumerPrefetchGauge == null) {
+            Gauge.Builder builder = Gauge.build()
+            .name("opflow_consumer_prefetch")
+            .help("Current prefetch of the consumers with adaptive prefetch.")
+            .labelNames("engineId", "consumerId");
+            if (pushGateway != null) {
+                consumerPrefetchGauge = builder.register(pushRegistry);
+            } else {
+                consumerPrefetchGauge = builder.register();
+            }
+        }
+        return consumerPrefetchGauge;
+    }
+
+    public Gauge.Child getConsumerPrefetchGauge(String engineId, String consumerId) {
+        return assertConsumerPrefetchGauge().labels(engineId, consumerId);
+    }
+
+    private Counter prefetchAdjustmentCounter;
+
+    private Counter assertPrefetchAdjustmentCounter() {
+        if (prefetchAdjustmentCounter == null) {
+            Counter.Builder builder = Counter.build()
+            .name("opflow_consumer_prefetch_adjustment_total")
+            .help("The total of the adjustments of the adaptive prefetch")
+            .labelNames("engineId", "consumerId", "direction");
+            if (pushGateway != null) {
+                prefetchAdjustmentCounter = builder.register(pushRegistry);
+            } else {
+                prefetchAdjustmentCounter = builder.register();
+            }
+        }
+        return prefetchAdjustmentCounter;
+    }
+
+    public Counter.Child getPrefetchAdjustmentCounter(String engineId, String consumerId, String direction) {
+        return assertPrefetchAdjustmentCounter().labels(engineId, consumerId, direction);
+    }
+
+    private Counter resultCacheCounter;
+
+    private Counter assertResultCacheCounter() {
+        if (resultCacheCounter == null) {
+            Counter.Builder builder = Counter.build()
+            .name("opflow_result_cache_events_total")
+            .help("The total of hits, misses and evictions of the result caches")
+            .labelNames("commanderId", "methodId", "event");
+            if (pushGateway != null) {
+                resultCacheCounter = builder.register(pushRegistry);
+            } else {
+                resultCacheCounter = builder.register();
+            }
+        }
+        return resultCacheCounter;
+    }
+
+    public Counter.Child getResultCacheCounter(String commanderId, String methodId, String event) {
+        return assertResultCacheCounter().labels(commanderId, methodId, event);
+    }
+
     private static String getExporterPort() {
         String port1 = OpflowEnvtool.instance.getEnvironVariable(DEFAULT_PROM_EXPORTER_PORT_ENV, null);
         String port2 = OpflowEnvtool.instance.getSystemProperty(DEFAULT_PROM_EXPORTER_PORT_KEY, port1);
@@ -215,6 +364,12 @@ public class OpflowExporter {
         
         // Initialize the metrics
         assertEngineConnectionGauge();
+        assertChannelPoolSizeGauge();
+        assertChannelPoolIdleGauge();
+        assertChannelCheckoutSummary();
+        assertChannelPublishCounter();
+        assertConsumerPrefetchGauge();
+        assertPrefetchAdjustmentCounter();
     }
  
     public static OpflowExporter getInstance() throws OpflowOperationException {
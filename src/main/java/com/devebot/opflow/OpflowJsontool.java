@@ -7,12 +7,17 @@ import com.google.gson.JsonArray;
 import com.google.gson.JsonObject;
 import com.google.gson.JsonParser;
 import com.google.gson.JsonSyntaxException;
+import com.google.gson.TypeAdapter;
+import com.google.gson.reflect.TypeToken;
 import com.google.gson.stream.JsonReader;
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
 import java.io.InputStream;
 import java.io.InputStreamReader;
 import java.io.Reader;
 import java.io.UnsupportedEncodingException;
 import java.lang.reflect.Type;
+import java.nio.charset.StandardCharsets;
 import java.util.Map;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -26,6 +31,7 @@ public class OpflowJsontool {
     private static final Gson GSON = new Gson();
     private static final Gson PSON = new GsonBuilder().setPrettyPrinting().create();
     private static final JsonParser JSON_PARSER = new JsonParser();
+    private static final Type MAP_TYPE = new TypeToken<Map<String, Object>>() {}.getType();
     
     public static String toString(Object jsonObj) {
         return toString(jsonObj, false);
@@ -35,6 +41,10 @@ public class OpflowJsontool {
         return pretty ? PSON.toJson(jsonObj) : GSON.toJson(jsonObj);
     }
     
+    public static String toString(Object jsonObj, Type type) {
+        return GSON.toJson(jsonObj, type);
+    }
+    
     public static String toString(Object[] objs, Type[] types) {
         return toString(objs, types, false);
     }
@@ -59,6 +69,10 @@ public class OpflowJsontool {
         return GSON.fromJson(json, type);
     }
     
+    public static <T> T toObject(String json, Type type) {
+        return GSON.fromJson(json, type);
+    }
+    
     public static <T> T toObject(InputStream inputStream, Class<T> type) {
         try {
             return toObject(new InputStreamReader(inputStream, "UTF-8"), type);
@@ -77,14 +91,14 @@ public class OpflowJsontool {
     
     public static Map<String, Object> toObjectMap(String json) {
         try {
-            Map<String,Object> map = GSON.fromJson(json, Map.class);
+            Map<String,Object> map = GSON.fromJson(json, MAP_TYPE);
             return map;
         } catch (JsonSyntaxException e) {
             throw new OpflowJsonTransformationException(e);
         }
     }
     
-    public static Object[] toObjectArray(String arrayString, Class[] types) {
+    public static Object[] toObjectArray(String arrayString, Class<?>[] types) {
         if (arrayString == null) return new Object[0];
         JsonArray array = JSON_PARSER.parse(arrayString).getAsJsonArray();
         Object[] args = new Object[types.length];
@@ -94,6 +108,47 @@ public class OpflowJsontool {
         return args;
     }
     
+    /**
+     * Reads the arguments straight from the UTF-8 bytes, each element of the
+     * array is bound to its type without building a tree of the whole array.
+     */
+    public static Object[] toObjectArray(byte[] arrayBytes, Type[] types) {
+        TypeAdapter<?>[] adapters = new TypeAdapter<?>[types.length];
+        for(int i=0; i<types.length; i++) {
+            adapters[i] = getTypeAdapter(types[i]);
+        }
+        return toObjectArray(arrayBytes, adapters);
+    }
+    
+    public static Object[] toObjectArray(byte[] arrayBytes, TypeAdapter<?>[] adapters) {
+        if (arrayBytes == null) return new Object[0];
+        Object[] args = new Object[adapters.length];
+        try (JsonReader reader = new JsonReader(new InputStreamReader(new ByteArrayInputStream(arrayBytes), StandardCharsets.UTF_8))) {
+            reader.setLenient(true);
+            reader.beginArray();
+            for(int i=0; i<adapters.length && reader.hasNext(); i++) {
+                args[i] = adapters[i].read(reader);
+            }
+        } catch (IOException | IllegalStateException e) {
+            throw new JsonSyntaxException(e);
+        }
+        return args;
+    }
+    
+    /**
+     * The adapters are cached by Gson, the callers may keep them to skip the
+     * lookup of each conversion.
+     */
+    public static TypeAdapter<?> getTypeAdapter(Type type) {
+        return GSON.getAdapter(TypeToken.get(type));
+    }
+    
+    // the callers give the adapter of the declared type of the value
+    @SuppressWarnings("unchecked")
+    public static String toString(Object jsonObj, TypeAdapter<?> adapter) {
+        return ((TypeAdapter<Object>) adapter).toJson(jsonObj);
+    }
+    
     public static <T> T extractField(String json, String fieldName, Class<T> type) {
         try {
             JsonObject jsonObject = (JsonObject)JSON_PARSER.parse(json);
@@ -0,0 +1,140 @@
+package com.devebot.opflow;
+
+import com.rabbitmq.client.Channel;
+import io.prometheus.client.Counter;
+import io.prometheus.client.Gauge;
+import java.io.IOException;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Retunes the prefetch of a consumer channel to the bandwidth-delay product:
+ * the number of messages the handlers complete during one broker round trip,
+ * plus the ones being handled. The service time is an EWMA of the handler
+ * durations, the round trip is sampled from the basicQos calls themselves.
+ * The channel must be dedicated to the consumer, as the limit is applied with
+ * global=true so that it takes effect on the running consumer.
+ *
+ * @author drupalex
+ */
+class OpflowPrefetchController {
+    private final static Logger LOG = LoggerFactory.getLogger(OpflowPrefetchController.class);
+    private final static double ALPHA = 0.2;
+    private final static long ADJUST_INTERVAL = 1000;
+    private final static double ADJUST_THRESHOLD = 0.2;
+
+    private final OpflowLogTracer logTracer;
+    private final Channel channel;
+    private final int parallelism;
+    private final int prefetchMin;
+    private final int prefetchMax;
+    private final Gauge.Child prefetchGauge;
+    private final Counter.Child increaseCounter;
+    private final Counter.Child decreaseCounter;
+    private final AtomicBoolean adjusting = new AtomicBoolean(false);
+    private volatile int prefetch;
+    // the handlers record their durations concurrently, the average is updated by CAS
+    private final AtomicLong serviceTime = new AtomicLong(Double.doubleToLongBits(-1));
+    // only updated by applyQos(), which runs under the adjusting flag
+    private volatile double roundTripTime = -1;
+    private volatile long lastAdjustment = 0;
+
+    public OpflowPrefetchController(OpflowLogTracer logTracer, String engineId, String consumerId, Channel channel,
+            int initial, int parallelism, int prefetchMin, int prefetchMax) {
+        this.logTracer = logTracer;
+        this.channel = channel;
+        this.parallelism = Math.max(1, parallelism);
+        this.prefetchMin = Math.max(1, prefetchMin);
+        this.prefetchMax = Math.max(this.prefetchMin, prefetchMax);
+        this.prefetch = clamp(initial);
+        OpflowExporter exporter = OpflowExporter.getInstance();
+        this.prefetchGauge = exporter.getConsumerPrefetchGauge(engineId, consumerId);
+        this.increaseCounter = exporter.getPrefetchAdjustmentCounter(engineId, consumerId, "increase");
+        this.decreaseCounter = exporter.getPrefetchAdjustmentCounter(engineId, consumerId, "decrease");
+    }
+
+    public void start() throws IOException {
+        applyQos(prefetch);
+        lastAdjustment = OpflowUtil.getCurrentTime();
+    }
+
+    public int getPrefetch() {
+        return prefetch;
+    }
+
+    /**
+     * Records the duration of a handler and retunes the prefetch when the
+     * adjustment interval has elapsed. Only one caller adjusts at a time.
+     */
+    public void record(long serviceNanos) {
+        double sample = serviceNanos / 1.0e6;
+        while (true) {
+            long currentBits = serviceTime.get();
+            double current = Double.longBitsToDouble(currentBits);
+            double next = (current < 0) ? sample : (ALPHA * sample + (1 - ALPHA) * current);
+            if (serviceTime.compareAndSet(currentBits, Double.doubleToLongBits(next))) break;
+        }
+        if (OpflowUtil.getCurrentTime() - lastAdjustment < ADJUST_INTERVAL) return;
+        if (!adjusting.compareAndSet(false, true)) return;
+        try {
+            adjust();
+        } finally {
+            adjusting.set(false);
+        }
+    }
+
+    private void adjust() {
+        lastAdjustment = OpflowUtil.getCurrentTime();
+        double _serviceTime = getServiceTime();
+        if (_serviceTime <= 0 || roundTripTime < 0) return;
+        int previous = prefetch;
+        int target = clamp((int) Math.ceil(parallelism * (roundTripTime / _serviceTime + 1)));
+        if (Math.abs(target - previous) <= Math.max(1, previous * ADJUST_THRESHOLD)) {
+            // re-applying the same limit is still a round trip sample
+            target = previous;
+        }
+        try {
+            applyQos(target);
+        } catch (IOException exception) {
+            if (logTracer.ready(LOG, "error")) LOG.error(logTracer
+                    .put("exceptionClass", exception.getClass().getName())
+                    .put("exceptionMessage", exception.getMessage())
+                    .text("Consumer[${consumerId}] - adaptive prefetch could not be applied")
+                    .stringify());
+            return;
+        }
+        if (target == previous) return;
+        if (target > previous) {
+            increaseCounter.inc();
+        } else {
+            decreaseCounter.inc();
+        }
+        if (logTracer.ready(LOG, "debug")) LOG.debug(logTracer
+                .put("previous", previous)
+                .put("prefetch", target)
+                .put("serviceTime", _serviceTime)
+                .put("roundTripTime", roundTripTime)
+                .text("Consumer[${consumerId}] - prefetch is adjusted from ${previous} to ${prefetch}")
+                .stringify());
+    }
+
+    private double getServiceTime() {
+        return Double.longBitsToDouble(serviceTime.get());
+    }
+
+    private void applyQos(int value) throws IOException {
+        long begin = System.nanoTime();
+        channel.basicQos(value, true);
+        double sample = (System.nanoTime() - begin) / 1.0e6;
+        double current = roundTripTime;
+        roundTripTime = (current < 0) ? sample : (ALPHA * sample + (1 - ALPHA) * current);
+        prefetch = value;
+        prefetchGauge.set(value);
+    }
+
+    private int clamp(int value) {
+        return Math.min(prefetchMax, Math.max(prefetchMin, value));
+    }
+}
@@ -5,10 +5,18 @@ import com.devebot.opflow.exception.OpflowOperationException;
 import com.rabbitmq.client.AMQP;
 import com.rabbitmq.client.Channel;
 import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collection;
 import java.util.HashMap;
 import java.util.LinkedList;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.function.BiConsumer;
 import java.util.concurrent.locks.ReentrantReadWriteLock;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -32,8 +40,12 @@ public class OpflowPubsubHandler implements AutoCloseable {
     private final String recyclebinName;
     private final List<OpflowEngine.ConsumerInfo> consumerInfos = new LinkedList<>();
     private int prefetch = 0;
+    private boolean manualAckEnabled = false;
     private int subscriberLimit = 0;
     private int redeliveredLimit = 0;
+    private int autoBatchSize = 0;
+    private int autoBatchDelay = 0;
+    private final AutoBatcher autoBatcher;
     private OpflowPubsubListener listener;
 
     public OpflowPubsubHandler(Map<String, Object> params) throws OpflowBootstrapException {
@@ -75,6 +87,9 @@ public class OpflowPubsubHandler implements AutoCloseable {
             if (prefetch < 0) prefetch = 0;
         }
         
+        // the messages are acked once processed, so that the prefetch limits the unprocessed ones
+        manualAckEnabled = Boolean.TRUE.equals(params.get("manualAckEnabled"));
+        
         if (params.get("subscriberLimit") instanceof Integer) {
             subscriberLimit = (Integer) params.get("subscriberLimit");
             if (subscriberLimit < 0) subscriberLimit = 0;
@@ -85,12 +100,27 @@ public class OpflowPubsubHandler implements AutoCloseable {
             if (redeliveredLimit < 0) redeliveredLimit = 0;
         }
         
+        if (params.get("autoBatchSize") instanceof Integer) {
+            autoBatchSize = (Integer) params.get("autoBatchSize");
+            if (autoBatchSize < 0) autoBatchSize = 0;
+        }
+        
+        if (params.get("autoBatchDelay") instanceof Integer) {
+            autoBatchDelay = (Integer) params.get("autoBatchDelay");
+        }
+        if (autoBatchDelay <= 0) autoBatchDelay = 10;
+        
+        autoBatcher = (autoBatchSize > 1) ? new AutoBatcher() : null;
+        
         if (logTracer.ready(LOG, "info")) LOG.info(logTracer
                 .put("subscriberName", subscriberName)
                 .put("recyclebinName", recyclebinName)
                 .put("prefetch", prefetch)
+                .put("manualAckEnabled", manualAckEnabled)
                 .put("subscriberLimit", subscriberLimit)
                 .put("redeliveredLimit", redeliveredLimit)
+                .put("autoBatchSize", autoBatchSize)
+                .put("autoBatchDelay", autoBatchDelay)
                 .tags("PubsubHandler.new() parameters")
                 .text("PubsubHandler[${pubsubHandlerId}].new() parameters")
                 .stringify());
@@ -100,38 +130,46 @@ public class OpflowPubsubHandler implements AutoCloseable {
                 .stringify());
     }
 
-    public void publish(String body) {
-        publish(body, null);
+    public CompletableFuture<Boolean> publish(String body) {
+        return publish(body, null);
     }
     
-    public void publish(String body, Map<String, Object> opts) {
-        publish(body, opts, null);
+    public CompletableFuture<Boolean> publish(String body, Map<String, Object> opts) {
+        return publish(body, opts, null);
     }
     
-    public void publish(String body, Map<String, Object> opts, String routingKey) {
-        publish(OpflowUtil.getBytes(body), opts, routingKey);
+    public CompletableFuture<Boolean> publish(String body, Map<String, Object> opts, String routingKey) {
+        return publish(OpflowUtil.getBytes(body), opts, routingKey);
     }
     
-    public void publish(byte[] body) {
-        publish(body, null);
+    public CompletableFuture<Boolean> publish(byte[] body) {
+        return publish(body, null);
     }
     
-    public void publish(byte[] body, Map<String, Object> options) {
-        publish(body, options, null);
+    public CompletableFuture<Boolean> publish(byte[] body, Map<String, Object> options) {
+        return publish(body, options, null);
     }
     
-    public void publish(byte[] body, Map<String, Object> options, String routingKey) {
+    /**
+     * Publishes a message. When the auto-batching is enabled (autoBatchSize &gt; 1),
+     * the message is buffered and sent with the next batch, failures are then
+     * reported through the returned future.
+     */
+    public CompletableFuture<Boolean> publish(byte[] body, Map<String, Object> options, String routingKey) {
+        if (autoBatcher != null) {
+            return autoBatcher.add(body, options, routingKey);
+        }
         ReentrantReadWriteLock.ReadLock rl = pushLock.readLock();
         try {
             rl.lock();
-            _publish(body, options, routingKey);
+            return _publish(body, options, routingKey);
         }
         finally {
             rl.unlock();
         }
     }
     
-    private void _publish(byte[] body, Map<String, Object> options, String routingKey) {
+    private CompletableFuture<Boolean> _publish(byte[] body, Map<String, Object> options, String routingKey) {
         options = OpflowUtil.ensureNotNull(options);
         
         Object requestId = options.get("requestId");
@@ -157,11 +195,49 @@ public class OpflowPubsubHandler implements AutoCloseable {
                     .stringify());
         }
         
-        engine.produce(body, options, override);
+        CompletableFuture<Boolean> confirmation = engine.produce(body, options, override);
         
         if (logPublish != null && logPublish.ready(LOG, "info")) LOG.info(logPublish
                 .text("Request[${requestId}] - PubsubHandler[${pubsubHandlerId}].publish() request has enqueued")
                 .stringify());
+        
+        return confirmation;
+    }
+    
+    public CompletableFuture<Boolean> publishBatch(Collection<OpflowMessage> messages) {
+        return publishBatch(messages, null);
+    }
+    
+    /**
+     * Publishes the messages (body and headers) back-to-back on a single channel.
+     * With the publisher confirms, the returned future completes when all of
+     * the messages have been confirmed.
+     */
+    public CompletableFuture<Boolean> publishBatch(Collection<OpflowMessage> messages, String routingKey) {
+        ReentrantReadWriteLock.ReadLock rl = pushLock.readLock();
+        try {
+            rl.lock();
+            return _publishBatch(messages, routingKey);
+        }
+        finally {
+            rl.unlock();
+        }
+    }
+    
+    private CompletableFuture<Boolean> _publishBatch(Collection<OpflowMessage> messages, String routingKey) {
+        if (logTracer.ready(LOG, "info")) LOG.info(logTracer
+                .put("messageTotal", (messages != null) ? messages.size() : 0)
+                .put("routingKey", routingKey)
+                .text("PubsubHandler[${pubsubHandlerId}].publishBatch() with ${messageTotal} messages, routingKey: ${routingKey}")
+                .stringify());
+        
+        Map<String, Object> override = null;
+        if (routingKey != null) {
+            override = new HashMap<>();
+            override.put("routingKey", routingKey);
+        }
+        
+        return engine.produceBatch(messages, override);
     }
     
     public OpflowEngine.ConsumerInfo subscribe(final OpflowPubsubListener newListener) {
@@ -210,8 +286,7 @@ public class OpflowPubsubHandler implements AutoCloseable {
                     redeliveredCount += 1;
                     headers.put("redeliveredCount", redeliveredCount);
                     
-                    AMQP.BasicProperties.Builder propBuilder = copyBasicProperties(properties);
-                    AMQP.BasicProperties props = propBuilder.headers(headers).build();
+                    AMQP.BasicProperties.Builder propBuilder = copyBasicProperties(properties).headers(headers);
                     
                     if (logRequest != null && logRequest.ready(LOG, "info")) LOG.info(logRequest
                             .put("redeliveredCount", redeliveredCount)
@@ -223,10 +298,10 @@ public class OpflowPubsubHandler implements AutoCloseable {
                         if (logRequest != null && logRequest.ready(LOG, "info")) LOG.info(logRequest
                                 .text("Request[${requestId}] - subscribe() requeue failed request")
                                 .stringify());
-                        sendToQueue(content, props, subscriberName, channel);
+                        sendToQueue(content, propBuilder, subscriberName, channel);
                     } else {
                         if (recyclebinName != null) {
-                            sendToQueue(content, props, recyclebinName, channel);
+                            sendToQueue(content, propBuilder, recyclebinName, channel);
                             if (logRequest != null && logRequest.ready(LOG, "info")) LOG.info(logRequest
                                     .put("recyclebinName", recyclebinName)
                                     .text("Request[${requestId}] - subscribe() enqueue failed request to recyclebin")
@@ -244,7 +319,8 @@ public class OpflowPubsubHandler implements AutoCloseable {
             @Override
             public void transform(Map<String, Object> opts) {
                 opts.put("consumerId", _consumerId);
-                opts.put("autoAck", Boolean.TRUE);
+                // basicQos only applies to the manual acks, which are opt-in
+                opts.put("autoAck", manualAckEnabled ? Boolean.FALSE : Boolean.TRUE);
                 opts.put("queueName", subscriberName);
                 if (prefetch > 0) opts.put("prefetch", prefetch);
                 if (subscriberLimit > 0) opts.put("consumerLimit", subscriberLimit);
@@ -259,6 +335,9 @@ public class OpflowPubsubHandler implements AutoCloseable {
     
     @Override
     public void close() {
+        if (autoBatcher != null) {
+            autoBatcher.close();
+        }
         pushLock.writeLock().lock();
         try {
             if (logTracer.ready(LOG, "info")) LOG.info(logTracer
@@ -302,6 +381,10 @@ public class OpflowPubsubHandler implements AutoCloseable {
         return executor;
     }
 
+    public OpflowEngine getEngine() {
+        return engine;
+    }
+
     public String getSubscriberName() {
         return subscriberName;
     }
@@ -314,9 +397,110 @@ public class OpflowPubsubHandler implements AutoCloseable {
         return redeliveredLimit;
     }
     
-    private void sendToQueue(byte[] data, AMQP.BasicProperties replyProps, String queueName, Channel channel) {
+    private class AutoBatcher {
+        private final Map<String, List<Pending>> buffers = new HashMap<>();
+        private boolean closed = false;
+        private final ScheduledExecutorService flusher = Executors.newSingleThreadScheduledExecutor(new ThreadFactory() {
+            @Override
+            public Thread newThread(Runnable runnable) {
+                Thread thread = new Thread(runnable, "opflow-pubsub-batcher-" + pubsubHandlerId);
+                thread.setDaemon(true);
+                return thread;
+            }
+        });
+        
+        public CompletableFuture<Boolean> add(byte[] body, Map<String, Object> options, final String routingKey) {
+            Pending pending = new Pending(new OpflowMessage(body, OpflowUtil.ensureNotNull(options)));
+            List<Pending> ready = null;
+            synchronized (this) {
+                // the flusher rejects the new tasks once it is shut down
+                if (closed) {
+                    throw new OpflowOperationException("PubsubHandler[" + pubsubHandlerId + "] has been closed");
+                }
+                List<Pending> buffer = buffers.get(routingKey);
+                if (buffer == null) {
+                    final List<Pending> _buffer = buffer = new ArrayList<>(autoBatchSize);
+                    buffers.put(routingKey, buffer);
+                    flusher.schedule(new Runnable() {
+                        @Override
+                        public void run() {
+                            boolean expired;
+                            synchronized (AutoBatcher.this) {
+                                expired = buffers.remove(routingKey, _buffer);
+                            }
+                            if (expired) flush(_buffer, routingKey);
+                        }
+                    }, autoBatchDelay, TimeUnit.MILLISECONDS);
+                }
+                buffer.add(pending);
+                if (buffer.size() >= autoBatchSize) {
+                    buffers.remove(routingKey);
+                    ready = buffer;
+                }
+            }
+            if (ready != null) flush(ready, routingKey);
+            return pending.future;
+        }
+        
+        public void close() {
+            Map<String, List<Pending>> remains;
+            synchronized (this) {
+                closed = true;
+                remains = new HashMap<>(buffers);
+                buffers.clear();
+            }
+            for (Map.Entry<String, List<Pending>> entry : remains.entrySet()) {
+                flush(entry.getValue(), entry.getKey());
+            }
+            flusher.shutdown();
+        }
+        
+        private void flush(final List<Pending> buffer, String routingKey) {
+            List<OpflowMessage> messages = new ArrayList<>(buffer.size());
+            for (Pending pending : buffer) {
+                messages.add(pending.message);
+            }
+            try {
+                publishBatch(messages, routingKey).whenComplete(new BiConsumer<Boolean, Throwable>() {
+                    @Override
+                    public void accept(Boolean acked, Throwable exception) {
+                        for (Pending pending : buffer) {
+                            if (exception != null) {
+                                pending.future.completeExceptionally(exception);
+                            } else {
+                                pending.future.complete(acked);
+                            }
+                        }
+                    }
+                });
+            } catch (RuntimeException exception) {
+                if (logTracer.ready(LOG, "error")) LOG.error(logTracer
+                        .put("messageTotal", buffer.size())
+                        .put("exceptionClass", exception.getClass().getName())
+                        .put("exceptionMessage", exception.getMessage())
+                        .text("PubsubHandler[${pubsubHandlerId}] - auto-batch of ${messageTotal} messages has failed")
+                        .stringify());
+                for (Pending pending : buffer) {
+                    pending.future.completeExceptionally(exception);
+                }
+            }
+        }
+    }
+    
+    private static class Pending {
+        private final OpflowMessage message;
+        private final CompletableFuture<Boolean> future = new CompletableFuture<>();
+        
+        Pending(OpflowMessage message) {
+            this.message = message;
+        }
+    }
+    
+    private void sendToQueue(byte[] data, AMQP.BasicProperties.Builder propBuilder, String queueName, Channel channel) {
         try {
-            channel.basicPublish("", queueName, replyProps, data);
+            // the content has been decoded by the engine, it is encoded again by the codec of this engine
+            byte[] payload = OpflowCodec.encode(engine.getCodec(), engine.getCodecThreshold(), propBuilder, data);
+            channel.basicPublish("", queueName, propBuilder.build(), payload);
         } catch (IOException exception) {
             throw new OpflowOperationException(exception);
         }
@@ -327,7 +511,6 @@ public class OpflowPubsubHandler implements AutoCloseable {
         
         if (properties.getAppId() != null) builder.appId(properties.getAppId());
         if (properties.getClusterId() != null) builder.clusterId(properties.getClusterId());
-        if (properties.getContentEncoding() != null) builder.contentEncoding(properties.getContentEncoding());
         if (properties.getContentType() != null) builder.contentType(properties.getContentType());
         if (properties.getCorrelationId() != null) builder.correlationId(properties.getCorrelationId());
         if (properties.getDeliveryMode() != null) builder.deliveryMode(properties.getDeliveryMode());
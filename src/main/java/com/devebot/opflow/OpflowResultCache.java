@@ -0,0 +1,193 @@
+package com.devebot.opflow;
+
+import io.prometheus.client.Counter;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Caches the serialized results of the idempotent routines on the commander
+ * side. Each routine has its own LRU map, bounded by its limit, whose entries
+ * expire after its TTL. The values are kept serialized, so that every hit
+ * returns a new object. The key is the serialized body of the arguments.
+ * A region counts its invalidations, a result is stored only if no
+ * invalidation has happened since its request has been sent.
+ *
+ * @author drupalex
+ */
+public class OpflowResultCache {
+    public final static int DEFAULT_LIMIT = 1000;
+    public final static String HEADER_CACHE_ACTION = "cacheAction";
+    public final static String ACTION_INVALIDATE = "invalidate";
+    public final static String INVALIDATION_KEY_SUFFIX = ".resultCache";
+
+    private final String commanderId;
+    private final OpflowExporter exporter;
+    private final Map<String, Region> regions = new ConcurrentHashMap<>();
+    private final Map<String, String> methodOfName = new ConcurrentHashMap<>();
+
+    public OpflowResultCache(String commanderId) {
+        this.commanderId = commanderId;
+        this.exporter = OpflowExporter.getInstance();
+    }
+
+    /**
+     * Enables the cache of a method, the names (alias, routineId) may be used
+     * to invalidate it.
+     */
+    public void register(String methodId, String[] names, long ttl, int limit) {
+        if (ttl <= 0) return;
+        regions.put(methodId, new Region(methodId, ttl, (limit > 0) ? limit : DEFAULT_LIMIT));
+        methodOfName.put(methodId, methodId);
+        if (names != null) {
+            for (String name : names) {
+                if (name != null) methodOfName.put(name, methodId);
+            }
+        }
+    }
+
+    public boolean isEnabled(String methodId) {
+        return regions.containsKey(methodId);
+    }
+
+    public byte[] get(String methodId, byte[] body) {
+        Region region = regions.get(methodId);
+        if (region == null) return null;
+        return region.get(new Key(body));
+    }
+
+    /**
+     * Returns the generation of the cache of a method, to be given to put()
+     * with the result of the request sent afterwards.
+     */
+    public long getGeneration(String methodId) {
+        Region region = regions.get(methodId);
+        if (region == null) return 0;
+        return region.getGeneration();
+    }
+
+    public void put(String methodId, byte[] body, byte[] value, long generation) {
+        Region region = regions.get(methodId);
+        if (region == null || value == null) return;
+        region.put(new Key(body), value, generation);
+    }
+
+    /**
+     * The invalidations are published with their own routing key, derived
+     * from the one of the configurer, so that they never reach its listeners.
+     */
+    public static String getInvalidationKey(String routingKey) {
+        return (routingKey != null) ? routingKey + INVALIDATION_KEY_SUFFIX : INVALIDATION_KEY_SUFFIX.substring(1);
+    }
+
+    /**
+     * Clears the cache of a routine (a methodId, an alias or a routineId), or
+     * all of the caches when the name is null.
+     */
+    public void invalidate(String name) {
+        if (name == null) {
+            for (Region region : regions.values()) {
+                region.clear();
+            }
+            return;
+        }
+        String methodId = methodOfName.get(name);
+        Region region = (methodId != null) ? regions.get(methodId) : null;
+        if (region != null) region.clear();
+    }
+
+    private class Region {
+        private final long ttl;
+        private final Counter.Child hitCounter;
+        private final Counter.Child missCounter;
+        private final Counter.Child evictionCounter;
+        private final LinkedHashMap<Key, Entry> entries;
+        private long generation = 0;
+
+        Region(String methodId, long ttl, final int limit) {
+            this.ttl = ttl;
+            this.hitCounter = exporter.getResultCacheCounter(commanderId, methodId, "hit");
+            this.missCounter = exporter.getResultCacheCounter(commanderId, methodId, "miss");
+            this.evictionCounter = exporter.getResultCacheCounter(commanderId, methodId, "eviction");
+            this.entries = new LinkedHashMap<Key, Entry>(16, 0.75f, true) {
+                @Override
+                protected boolean removeEldestEntry(Map.Entry<Key, Entry> eldest) {
+                    if (size() <= limit) return false;
+                    evictionCounter.inc();
+                    return true;
+                }
+            };
+        }
+
+        byte[] get(Key key) {
+            Entry entry;
+            synchronized (entries) {
+                entry = entries.get(key);
+                if (entry != null && entry.expiredAt <= System.currentTimeMillis()) {
+                    entries.remove(key);
+                    evictionCounter.inc();
+                    entry = null;
+                }
+            }
+            if (entry == null) {
+                missCounter.inc();
+                return null;
+            }
+            hitCounter.inc();
+            return entry.value;
+        }
+
+        long getGeneration() {
+            synchronized (entries) {
+                return generation;
+            }
+        }
+
+        void put(Key key, byte[] value, long requestGeneration) {
+            Entry entry = new Entry(value, System.currentTimeMillis() + ttl);
+            synchronized (entries) {
+                // the result may predate an invalidation which has happened during its request
+                if (requestGeneration != generation) return;
+                entries.put(key, entry);
+            }
+        }
+
+        void clear() {
+            synchronized (entries) {
+                generation++;
+                entries.clear();
+            }
+        }
+    }
+
+    private static class Entry {
+        private final byte[] value;
+        private final long expiredAt;
+
+        Entry(byte[] value, long expiredAt) {
+            this.value = value;
+            this.expiredAt = expiredAt;
+        }
+    }
+
+    private static class Key {
+        private final byte[] data;
+        private final int hash;
+
+        Key(byte[] data) {
+            this.data = data;
+            this.hash = Arrays.hashCode(data);
+        }
+
+        @Override
+        public int hashCode() {
+            return hash;
+        }
+
+        @Override
+        public boolean equals(Object other) {
+            return (other instanceof Key) && Arrays.equals(data, ((Key) other).data);
+        }
+    }
+}
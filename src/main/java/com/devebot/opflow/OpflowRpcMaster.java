@@ -1,19 +1,17 @@
 package com.devebot.opflow;
 
 import com.devebot.opflow.exception.OpflowBootstrapException;
+import com.devebot.opflow.exception.OpflowOperationException;
 import com.rabbitmq.client.AMQP;
 import com.rabbitmq.client.Channel;
 import java.io.IOException;
 import java.util.HashMap;
 import java.util.Map;
-import java.util.Timer;
-import java.util.TimerTask;
+import java.util.concurrent.CompletableFuture;
 import java.util.concurrent.ConcurrentHashMap;
-import java.util.concurrent.ExecutorService;
-import java.util.concurrent.Executors;
-import java.util.concurrent.locks.Condition;
-import java.util.concurrent.locks.Lock;
-import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.function.BiConsumer;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
@@ -25,7 +23,6 @@ public class OpflowRpcMaster implements AutoCloseable {
     private final static Logger LOG = LoggerFactory.getLogger(OpflowRpcMaster.class);
     
     private final long DELAY_TIMEOUT = 1000;
-    private final long PAUSE_SLEEPING_INTERVAL = 1000;
     private final int PREFETCH_NUM = 1;
     private final int CONSUMER_MAX = 1;
     
@@ -33,13 +30,17 @@ public class OpflowRpcMaster implements AutoCloseable {
     private final OpflowLogTracer logTracer;
     private final OpflowExporter exporter;
     
-    private final Timer timer = new Timer(true);
-    private final ExecutorService threadExecutor = Executors.newSingleThreadExecutor();
-    private final ReentrantReadWriteLock pushLock = new ReentrantReadWriteLock();
-    private final ReentrantReadWriteLock taskLock = new ReentrantReadWriteLock();
-    private final Lock closeLock = taskLock.writeLock();
-    private final Condition closeBarrier = closeLock.newCondition();
-    private final boolean useDuplexLock = true;
+    /**
+     * The admission state: the CLOSING bit and the number of the requests in
+     * flight. A request only increments and decrements this word, the waits for
+     * pause(), close() and the drain are made on the admissionLock monitor.
+     */
+    private final static long CLOSING = 1L << 62;
+    private final static long INFLIGHT_MASK = CLOSING - 1;
+    private final AtomicLong admission = new AtomicLong(0);
+    private final Object admissionLock = new Object();
+    private final String pauseId = OpflowUtil.getLogID();
+    private volatile long pausedUntil = 0;
     
     private final OpflowEngine engine;
     private final OpflowExecutor executor;
@@ -49,6 +50,9 @@ public class OpflowRpcMaster implements AutoCloseable {
     private final Boolean responseDurable;
     private final Boolean responseExclusive;
     private final Boolean responseAutoDelete;
+    private final boolean directReplyEnabled;
+    private final Object[] replyChannelLocks;
+    private final int responseShards;
     
     private final boolean monitorEnabled;
     private final String monitorId;
@@ -71,6 +75,11 @@ public class OpflowRpcMaster implements AutoCloseable {
         brokerParams.put("mode", "rpc_master");
         brokerParams.put("exchangeType", "direct");
         
+        // the direct reply-to requests are published on the consumer channels, which have no confirm tracker
+        if (Boolean.TRUE.equals(params.get("directReplyEnabled")) && Boolean.TRUE.equals(params.get("confirmationEnabled"))) {
+            throw new OpflowBootstrapException("directReplyEnabled could not be used with confirmationEnabled");
+        }
+        
         engine = new OpflowEngine(brokerParams);
         executor = new OpflowExecutor(engine);
         
@@ -119,8 +128,24 @@ public class OpflowRpcMaster implements AutoCloseable {
             responseAutoDelete = responseQueueSuffix != null ? true : null;
         }
         
-        if (responseName != null) {
-            executor.assertQueue(responseName, responseDurable, responseExclusive, responseAutoDelete);
+        // the replies go through the direct reply-to pseudo-queue, no callback queue is declared
+        directReplyEnabled = Boolean.TRUE.equals(params.get("directReplyEnabled"));
+        
+        if (params.get("responseShards") instanceof Integer && (Integer) params.get("responseShards") > 1) {
+            responseShards = (Integer) params.get("responseShards");
+        } else {
+            responseShards = 1;
+        }
+        
+        replyChannelLocks = new Object[responseShards];
+        for (int shard=0; shard<responseShards; shard++) {
+            replyChannelLocks[shard] = new Object();
+        }
+        
+        if (responseName != null && !directReplyEnabled) {
+            for (int shard=0; shard<responseShards; shard++) {
+                executor.assertQueue(getShardName(shard), responseDurable, responseExclusive, responseAutoDelete);
+            }
         }
         
         if (params.get("monitorEnabled") != null && params.get("monitorEnabled") instanceof Boolean) {
@@ -134,7 +159,7 @@ public class OpflowRpcMaster implements AutoCloseable {
         if (params.get("monitorInterval") != null && params.get("monitorInterval") instanceof Integer) {
             monitorInterval = (Integer) params.get("monitorInterval");
         } else {
-            monitorInterval = 14000; // can run 2-3 times in 30s
+            monitorInterval = 10; // precision of the timeout wheel
         }
         
         if (params.get("monitorTimeout") != null && params.get("monitorTimeout") instanceof Long) {
@@ -148,6 +173,8 @@ public class OpflowRpcMaster implements AutoCloseable {
                 .put("responseDurable", responseDurable)
                 .put("responseExclusive", responseExclusive)
                 .put("responseAutoDelete", responseAutoDelete)
+                .put("directReplyEnabled", directReplyEnabled)
+                .put("responseShards", responseShards)
                 .put("monitorId", monitorId)
                 .put("monitorEnabled", monitorEnabled)
                 .put("monitorInterval", monitorInterval)
@@ -156,6 +183,8 @@ public class OpflowRpcMaster implements AutoCloseable {
                 .text("RpcMaster[${rpcMasterId}].new() parameters")
                 .stringify());
 
+        callbackConsumers = new AtomicReferenceArray<>(responseShards);
+        
         exporter = OpflowExporter.getInstance();
         
         exporter.changeComponentInstance("rpc_master", rpcMasterId, OpflowExporter.GaugeAction.INC);
@@ -167,14 +196,29 @@ public class OpflowRpcMaster implements AutoCloseable {
 
     private final Map<String, OpflowRpcRequest> tasks = new ConcurrentHashMap<>();
     
-    private OpflowEngine.ConsumerInfo callbackConsumer;
+    /**
+     * One callback consumer per shard, each of them on its own channel and its
+     * own reply queue, so that the replies are dispatched by several threads.
+     */
+    private final AtomicReferenceArray<OpflowEngine.ConsumerInfo> callbackConsumers;
+    
+    private String getShardName(int shard) {
+        if (responseName == null || shard == 0) return responseName;
+        return responseName + '_' + shard;
+    }
+    
+    private int getShard(String taskId) {
+        if (responseShards == 1) return 0;
+        return (taskId.hashCode() & Integer.MAX_VALUE) % responseShards;
+    }
 
-    private OpflowEngine.ConsumerInfo initCallbackConsumer(final boolean forked) {
+    private OpflowEngine.ConsumerInfo initCallbackConsumer(final boolean forked, final int shard) {
         final String _consumerId = OpflowUtil.getLogID();
         final OpflowLogTracer logSession = logTracer.branch("consumerId", _consumerId);
         if (logSession.ready(LOG, "info")) LOG.info(logSession
                 .put("forked", forked)
-                .text("initCallbackConsumer() is invoked with [forked]: ${forked}")
+                .put("shard", shard)
+                .text("initCallbackConsumer() is invoked with [forked]: ${forked}, [shard]: ${shard}")
                 .stringify());
         return engine.consume(new OpflowListener() {
             @Override
@@ -228,13 +272,18 @@ public class OpflowRpcMaster implements AutoCloseable {
             @Override
             public void transform(Map<String, Object> opts) {
                 opts.put("consumerId", _consumerId);
-                if (!forked) {
-                    opts.put("queueName", responseName);
+                // the shards need their own channels, a channel has a single dispatch thread
+                Boolean forceNewChannel = (responseShards > 1) ? Boolean.TRUE : Boolean.FALSE;
+                if (directReplyEnabled) {
+                    opts.put("directReplyTo", Boolean.TRUE);
+                    opts.put("forceNewChannel", forceNewChannel);
+                } else if (!forked) {
+                    opts.put("queueName", getShardName(shard));
                     if (responseDurable != null) opts.put("durable", responseDurable);
                     if (responseExclusive != null) opts.put("exclusive", responseExclusive);
                     if (responseAutoDelete != null) opts.put("autoDelete", responseAutoDelete);
                     opts.put("consumerLimit", CONSUMER_MAX);
-                    opts.put("forceNewChannel", Boolean.FALSE);
+                    opts.put("forceNewChannel", forceNewChannel);
                 }
                 opts.put("binding", Boolean.FALSE);
                 opts.put("prefetch", PREFETCH_NUM);
@@ -242,24 +291,99 @@ public class OpflowRpcMaster implements AutoCloseable {
         }).toMap());
     }
     
+    private OpflowEngine.ConsumerInfo getCallbackConsumer(int shard) {
+        OpflowEngine.ConsumerInfo consumerInfo = callbackConsumers.get(shard);
+        if (consumerInfo == null) {
+            synchronized (callbackConsumers) {
+                consumerInfo = callbackConsumers.get(shard);
+                if (consumerInfo == null) {
+                    consumerInfo = initCallbackConsumer(false, shard);
+                    callbackConsumers.set(shard, consumerInfo);
+                }
+            }
+        }
+        return consumerInfo;
+    }
+    
     private void cancelCallbackConsumer() {
-        if (callbackConsumer != null) {
-            engine.cancelConsumer(callbackConsumer);
-            callbackConsumer = null;
+        synchronized (callbackConsumers) {
+            for (int shard=0; shard<callbackConsumers.length(); shard++) {
+                OpflowEngine.ConsumerInfo consumerInfo = callbackConsumers.getAndSet(shard, null);
+                if (consumerInfo != null) {
+                    engine.cancelConsumer(consumerInfo);
+                }
+            }
         }
     }
     
-    private OpflowTimeout.Monitor timeoutMonitor = null;
+    private volatile OpflowTimeout.Monitor timeoutMonitor = null;
     
-    private OpflowTimeout.Monitor initTimeoutMonitor() {
-        OpflowTimeout.Monitor monitor = null;
-        if (monitorEnabled) {
-            monitor = new OpflowTimeout.Monitor(tasks, monitorInterval, monitorTimeout, monitorId);
-            monitor.start();
+    private OpflowTimeout.Monitor getTimeoutMonitor() {
+        if (!monitorEnabled) return null;
+        OpflowTimeout.Monitor monitor = timeoutMonitor;
+        if (monitor == null) {
+            synchronized (admissionLock) {
+                monitor = timeoutMonitor;
+                if (monitor == null) {
+                    monitor = new OpflowTimeout.Monitor(monitorInterval, monitorTimeout, monitorId);
+                    monitor.start();
+                    timeoutMonitor = monitor;
+                }
+            }
         }
         return monitor;
     }
     
+    /**
+     * Admits a request. The fast path is a single increment of the admission
+     * word, the caller waits only while the master is paused or closing.
+     */
+    private void enter() {
+        while (true) {
+            if (pausedUntil != 0) awaitUnpaused();
+            long state = admission.incrementAndGet();
+            if ((state & CLOSING) == 0) return;
+            leave();
+            awaitClosed();
+        }
+    }
+    
+    private void leave() {
+        long state = admission.decrementAndGet();
+        if (state == CLOSING) {
+            synchronized (admissionLock) {
+                admissionLock.notifyAll();
+            }
+        }
+    }
+    
+    private void awaitUnpaused() {
+        synchronized (admissionLock) {
+            long remaining;
+            while (pausedUntil != 0 && (remaining = pausedUntil - OpflowUtil.getCurrentTime()) > 0) {
+                waitAdmission(remaining);
+            }
+            pausedUntil = 0;
+        }
+    }
+    
+    private void awaitClosed() {
+        synchronized (admissionLock) {
+            while ((admission.get() & CLOSING) != 0) {
+                waitAdmission(0);
+            }
+        }
+    }
+    
+    private void waitAdmission(long timeout) {
+        try {
+            admissionLock.wait(timeout);
+        } catch (InterruptedException exception) {
+            Thread.currentThread().interrupt();
+            throw new OpflowOperationException("The request has been interrupted while waiting for the admission", exception);
+        }
+    }
+    
     public OpflowRpcRequest request(String routineId, String body) {
         return request(routineId, body, null);
     }
@@ -273,17 +397,47 @@ public class OpflowRpcMaster implements AutoCloseable {
     }
     
     public OpflowRpcRequest request(final String routineId, byte[] body, Map<String, Object> options) {
-        Lock rl = pushLock.readLock();
+        return _request(routineId, body, options, false, null);
+    }
+    
+    public CompletableFuture<OpflowRpcResult> requestAsync(String routineId, String body) {
+        return requestAsync(routineId, body, null);
+    }
+    
+    public CompletableFuture<OpflowRpcResult> requestAsync(String routineId, String body, Map<String, Object> options) {
+        return requestAsync(routineId, OpflowUtil.getBytes(body), options, null);
+    }
+    
+    public CompletableFuture<OpflowRpcResult> requestAsync(String routineId, byte[] body, Map<String, Object> options) {
+        return requestAsync(routineId, body, options, null);
+    }
+    
+    /**
+     * Sends a request without blocking the caller. The returned future is
+     * completed by the callback consumer when the final response arrives (or
+     * by the timeout monitor), so its dependent stages should not block.
+     */
+    public CompletableFuture<OpflowRpcResult> requestAsync(final String routineId, byte[] body, Map<String, Object> options,
+            OpflowRpcRequest.ProgressListener progressListener) {
+        return _request(routineId, body, options, true, progressListener).getFuture();
+    }
+    
+    private OpflowRpcRequest _request(final String routineId, byte[] body, Map<String, Object> options,
+            boolean async, OpflowRpcRequest.ProgressListener progressListener) {
+        enter();
+        boolean admitted = false;
         try {
-            rl.lock();
-            return _request(routineId, body, options);
+            OpflowRpcRequest task = _admit(routineId, body, options, async, progressListener);
+            admitted = true;
+            return task;
         }
         finally {
-            rl.unlock();
+            if (!admitted) leave();
         }
     }
     
-    private OpflowRpcRequest _request(final String routineId, byte[] body, Map<String, Object> options) {
+    private OpflowRpcRequest _admit(final String routineId, byte[] body, Map<String, Object> options,
+            boolean async, OpflowRpcRequest.ProgressListener progressListener) {
 
         options = OpflowUtil.ensureNotNull(options);
         
@@ -303,22 +457,19 @@ public class OpflowRpcMaster implements AutoCloseable {
             options.put("timeout", expiration + DELAY_TIMEOUT);
         }
         
-        if (timeoutMonitor == null) {
-            timeoutMonitor = initTimeoutMonitor();
-        }
+        final OpflowTimeout.Monitor _timeoutMonitor = getTimeoutMonitor();
         
-        final boolean forked = "forked".equals((String)options.get("mode"));
+        final String taskId = OpflowUtil.getLogID();
+        
+        final boolean forked = !directReplyEnabled && "forked".equals((String)options.get("mode"));
+        final int shard = getShard(taskId);
         final OpflowEngine.ConsumerInfo consumerInfo;
         if (forked) {
-            consumerInfo = initCallbackConsumer(true);
+            consumerInfo = initCallbackConsumer(true, 0);
         } else {
-            if (callbackConsumer == null) {
-                callbackConsumer = initCallbackConsumer(false);
-            }
-            consumerInfo = callbackConsumer;
+            consumerInfo = getCallbackConsumer(shard);
         }
         
-        final String taskId = OpflowUtil.getLogID();
         OpflowRpcRequest task = new OpflowRpcRequest(options, new OpflowTimeout.Listener() {
             private OpflowLogTracer logTask = null;
             
@@ -328,39 +479,26 @@ public class OpflowRpcMaster implements AutoCloseable {
             
             @Override
             public void handleEvent() {
-                Lock eventLock = useDuplexLock ? taskLock.readLock() : closeLock;
-                eventLock.lock();
-                try {
-                    tasks.remove(taskId);
-                    if (forked) {
-                        engine.cancelConsumer(consumerInfo);
-                    }
-                    if (tasks.isEmpty()) {
-                        try {
-                            if (eventLock != closeLock) {
-                                eventLock.unlock();
-                                closeLock.lock();
-                            }
-                            closeBarrier.signal();
-                        }
-                        finally {
-                            if (eventLock != closeLock) {
-                                closeLock.unlock();
-                                eventLock.lock();
-                            }
-                        }
-                    }
-                    if (logTask != null && logTask.ready(LOG, "debug")) LOG.debug(logTask
-                            .put("taskListSize", tasks.size())
-                            .text("Request[${requestId}] - RpcMaster[${rpcMasterId}]"
-                                    + "- tasksize after removing task[${taskId}]: ${taskListSize}")
-                            .stringify());
-                } finally {
-                    eventLock.unlock();
+                // the task is removed once, by its completion or by the clearing of close()
+                if (tasks.remove(taskId) == null) return;
+                if (_timeoutMonitor != null) {
+                    _timeoutMonitor.remove(taskId);
+                }
+                if (forked) {
+                    engine.cancelConsumer(consumerInfo);
                 }
+                leave();
+                if (logTask != null && logTask.ready(LOG, "debug")) LOG.debug(logTask
+                        .put("taskListSize", tasks.size())
+                        .text("Request[${requestId}] - RpcMaster[${rpcMasterId}]"
+                                + "- tasksize after removing task[${taskId}]: ${taskListSize}")
+                        .stringify());
             }
-        });
+        }, async, progressListener);
         tasks.put(taskId, task);
+        if (_timeoutMonitor != null) {
+            _timeoutMonitor.add(taskId, task);
+        }
         
         Map<String, Object> headers = new HashMap<>();
         headers.put("requestId", task.getRequestId());
@@ -374,6 +512,10 @@ public class OpflowRpcMaster implements AutoCloseable {
             headers.put("progressEnabled", options.get("progressEnabled"));
         }
         
+        if (options.get("bodyFormat") instanceof String) {
+            headers.put("bodyFormat", options.get("bodyFormat"));
+        }
+        
         AMQP.BasicProperties.Builder builder = new AMQP.BasicProperties.Builder()
                 .correlationId(taskId);
         
@@ -396,10 +538,48 @@ public class OpflowRpcMaster implements AutoCloseable {
         
         exporter.incRpcInvocationEvent("rpc_master", rpcMasterId, routineId, "request");
         
-        engine.produce(body, headers, builder);
+        final OpflowRpcRequest _task = task;
+        Map<String, Object> override = null;
+        if (directReplyEnabled) {
+            override = OpflowUtil.buildMap()
+                    .put("channel", consumerInfo.getChannel())
+                    .put("channelLock", replyChannelLocks[shard])
+                    .toMap();
+        }
+        
+        // the registered task owns the admission: a failure of the publishing
+        // completes the task, whose listener leaves the admission once
+        CompletableFuture<Boolean> confirmation;
+        try {
+            confirmation = engine.produce(body, headers, builder, override);
+        } catch (RuntimeException exception) {
+            rejectTask(logRequest, _task, exception);
+            return task;
+        }
+        confirmation.whenComplete(new BiConsumer<Boolean, Throwable>() {
+            @Override
+            public void accept(Boolean acked, Throwable exception) {
+                if (Boolean.TRUE.equals(acked)) return;
+                rejectTask(logRequest, _task, exception);
+            }
+        });
         
         return task;
     }
+    
+    private void rejectTask(OpflowLogTracer logRequest, OpflowRpcRequest task, Throwable exception) {
+        if (logRequest.ready(LOG, "error")) LOG.error(logRequest
+                .put("exceptionMessage", (exception != null) ? exception.getMessage() : null)
+                .text("Request[${requestId}] - RpcMaster[${rpcMasterId}] - the request has not been confirmed by the broker")
+                .stringify());
+        Exception cause = new OpflowOperationException("The request has been rejected by the broker", exception);
+        task.push(new OpflowMessage(OpflowUtil.getBytes(OpflowUtil.buildMap()
+                .put("exceptionClass", cause.getClass().getName())
+                .put("exceptionPayload", OpflowJsontool.toString(cause))
+                .put("type", cause.getClass().getName())
+                .put("message", cause.getMessage())
+                .toString()), OpflowUtil.buildMap().put("status", "failed").toMap()));
+    }
 
     public class State extends OpflowEngine.State {
         public State(OpflowEngine.State superState) {
@@ -412,144 +592,71 @@ public class OpflowRpcMaster implements AutoCloseable {
         return state;
     }
     
-    private class PauseThread extends Thread {
-        private final ReentrantReadWriteLock rwlock;
-        private final String instanceId;
-        private final OpflowLogTracer tracer;
-        private long duration = 0;
-        private long count = 0;
-        private boolean running = true;
-        
-        public String getInstanceId() {
-            return instanceId;
-        }
-        
-        public boolean isLocked() {
-            return rwlock.isWriteLocked();
-        }
-        
-        public void init(long duration) {
-            this.duration = duration;
-            this.count = 0;
-            this.running = true;
-        }
-        
-        public void terminate() {
-            running = false;
-        }
-        
-        PauseThread(OpflowLogTracer logTracer, ReentrantReadWriteLock pushLock) {
-            this.rwlock = pushLock;
-            this.instanceId = OpflowUtil.getLogID();
-            this.tracer = logTracer.copy();
-            if (tracer.ready(LOG, "trace")) LOG.trace(tracer
-                    .text("PauseThread[${rpcMasterId}] constructed")
-                    .stringify());
-        }
-        
-        @Override
-        public void run() {
-            if (duration <= 0) return;
-            if (rwlock.isWriteLocked()) return;
-            rwlock.writeLock().lock();
-            try {
-                if(rwlock.isWriteLockedByCurrentThread()) {
-                    if (tracer.ready(LOG, "trace")) LOG.trace(tracer
-                            .put("duration", duration)
-                            .text("PauseThread[${rpcMasterId}].run() sleeping in ${duration} ms")
-                            .stringify());
-                    while (running && count < duration) {
-                        count += PAUSE_SLEEPING_INTERVAL;
-                        Thread.sleep(PAUSE_SLEEPING_INTERVAL);
-                    }
-                }
-            }
-            catch (InterruptedException e) {
-                if (tracer.ready(LOG, "trace")) LOG.trace(tracer
-                        .text("PauseThread[${rpcMasterId}].run() is interrupted")
-                        .stringify());
-            }
-            finally {
-                if (tracer.ready(LOG, "trace")) LOG.trace(tracer
-                        .text("PauseThread[${rpcMasterId}].run() wake-up")
-                        .stringify());
-                if(rwlock.isWriteLockedByCurrentThread()) {
-                    if (tracer.ready(LOG, "trace")) LOG.trace(tracer
-                            .text("PauseThread[${rpcMasterId}].run() done!")
-                            .stringify());
-                    rwlock.writeLock().unlock();
-                }
-            }
-        }
-    }
-    
-    private PauseThread pauseThread;
-    
     public boolean isLocked() {
-        if (pauseThread == null) {
-            return false;
-        }
-        return pauseThread.isLocked();
+        long until = pausedUntil;
+        return until != 0 && until > OpflowUtil.getCurrentTime();
     }
     
     public Map<String, Object> pause(final long duration) {
-        if (pauseThread == null) {
-            pauseThread = new PauseThread(logTracer, pushLock);
-        }
         Map<String, Object> result = OpflowUtil.buildOrderedMap()
-                .put("threadId", pauseThread.getInstanceId())
+                .put("threadId", pauseId)
                 .put("status", "skipped")
                 .toMap();
-        if (!pauseThread.isLocked()) {
-            pauseThread.init(duration);
-            threadExecutor.execute(pauseThread);
-            result.put("duration", duration);
-            result.put("status", "locking");
+        if (duration <= 0) return result;
+        synchronized (admissionLock) {
+            if (!isLocked()) {
+                pausedUntil = OpflowUtil.getCurrentTime() + duration;
+                result.put("duration", duration);
+                result.put("status", "locking");
+                if (logTracer.ready(LOG, "trace")) LOG.trace(logTracer
+                        .put("duration", duration)
+                        .text("RpcMaster[${rpcMasterId}].pause() the requests are held in ${duration} ms")
+                        .stringify());
+            }
         }
         return result;
     }
     
     public Map<String, Object> unpause() {
         Map<String, Object> result = OpflowUtil.buildOrderedMap()
-                .put("threadId", pauseThread.getInstanceId())
+                .put("threadId", pauseId)
                 .toMap();
-        if (pauseThread == null) {
-            result.put("status", "free");
-        } else {
-            pauseThread.terminate();
-            result.put("status", pauseThread.isLocked() ? "unlocking" : "unlocked");
+        synchronized (admissionLock) {
+            result.put("status", isLocked() ? "unlocked" : "free");
+            pausedUntil = 0;
+            admissionLock.notifyAll();
         }
         return result;
     }
     
-    private void scheduleClearTasks() {
-        if (tasks.size() > 0) {
-            timer.schedule(new TimerTask() {
-                @Override
-                public void run() {
-                    closeLock.lock();
-                    try {
-                        cancelCallbackConsumer();
-                        tasks.clear();
-                        closeBarrier.signal();
-                    }
-                    finally {
-                        closeLock.unlock();
-                    }
-                }
-            }, (expiration + DELAY_TIMEOUT) * tasks.size());
+    /**
+     * Removes the tasks that have not completed in time, their requests are
+     * not counted as in flight anymore. Each of them is failed, so that its
+     * caller does not wait for a response that will never come.
+     */
+    private void clearTasks() {
+        for (String taskId : tasks.keySet()) {
+            OpflowRpcRequest task = tasks.remove(taskId);
+            if (task != null) {
+                OpflowTimeout.Monitor monitor = timeoutMonitor;
+                if (monitor != null) monitor.remove(taskId);
+                task.push(OpflowMessage.ERROR);
+                leave();
+            }
         }
     }
     
-    private void completeClearTasks() {
-        timer.cancel();
-        timer.purge();
-    }
-    
     @Override
     public void close() {
-        closeLock.lock();
-        pushLock.writeLock().lock();
+        // a single close() at a time, the next one waits for the reopening
+        while (true) {
+            long state = admission.get();
+            if ((state & CLOSING) != 0) {
+                awaitClosed();
+                continue;
+            }
+            if (admission.compareAndSet(state, state | CLOSING)) break;
+        }
         if (logTracer.ready(LOG, "trace")) LOG.trace(logTracer
                 .text("RpcMaster[${rpcMasterId}].close() - obtain the lock")
                 .stringify());
@@ -558,11 +665,19 @@ public class OpflowRpcMaster implements AutoCloseable {
                 .text("RpcMaster[${rpcMasterId}].close() - check tasks.isEmpty()? and await...")
                 .stringify());
             
-            scheduleClearTasks();
-            
-            while(!tasks.isEmpty()) closeBarrier.await();
-            
-            completeClearTasks();
+            synchronized (admissionLock) {
+                long deadline = OpflowUtil.getCurrentTime() + (expiration + DELAY_TIMEOUT) * Math.max(1, tasks.size());
+                while ((admission.get() & INFLIGHT_MASK) != 0) {
+                    long remaining = deadline - OpflowUtil.getCurrentTime();
+                    if (remaining <= 0) {
+                        cancelCallbackConsumer();
+                        clearTasks();
+                        deadline = OpflowUtil.getCurrentTime() + DELAY_TIMEOUT;
+                        continue;
+                    }
+                    admissionLock.wait(remaining);
+                }
+            }
             
             if (logTracer.ready(LOG, "trace")) LOG.trace(logTracer
                 .text("RpcMaster[${rpcMasterId}].close() - cancelCallbackConsumer")
@@ -572,9 +687,11 @@ public class OpflowRpcMaster implements AutoCloseable {
             if (logTracer.ready(LOG, "trace")) LOG.trace(logTracer
                 .text("RpcMaster[${rpcMasterId}].close() - stop timeoutMonitor")
                 .stringify());
-            if (timeoutMonitor != null) {
-                timeoutMonitor.stop();
-                timeoutMonitor = null;
+            synchronized (admissionLock) {
+                if (timeoutMonitor != null) {
+                    timeoutMonitor.stop();
+                    timeoutMonitor = null;
+                }
             }
             
             if (logTracer.ready(LOG, "trace")) LOG.trace(logTracer
@@ -582,14 +699,15 @@ public class OpflowRpcMaster implements AutoCloseable {
                 .stringify());
             if (engine != null) engine.close();
         } catch(InterruptedException ex) {
+            Thread.currentThread().interrupt();
             if (logTracer.ready(LOG, "error")) LOG.error(logTracer
                 .text("RpcMaster[${rpcMasterId}].close() - an interruption has been raised")
                 .stringify());
         } finally {
-            if(pushLock.isWriteLockedByCurrentThread()) {
-                pushLock.writeLock().unlock();
+            synchronized (admissionLock) {
+                admission.addAndGet(-CLOSING);
+                admissionLock.notifyAll();
             }
-            closeLock.unlock();
             if (logTracer.ready(LOG, "trace")) LOG.trace(logTracer
                 .text("RpcMaster[${rpcMasterId}].close() - lock has been released")
                 .stringify());
@@ -628,6 +746,10 @@ public class OpflowRpcMaster implements AutoCloseable {
         return responseAutoDelete;
     }
 
+    public int getCallbackShards() {
+        return responseShards;
+    }
+
     @Override
     protected void finalize() throws Throwable {
         exporter.changeComponentInstance("rpc_master", rpcMasterId, OpflowExporter.GaugeAction.DEC);
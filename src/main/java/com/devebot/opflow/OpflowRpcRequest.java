@@ -7,7 +7,9 @@ import java.util.LinkedList;
 import java.util.List;
 import java.util.Map;
 import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletableFuture;
 import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.atomic.AtomicBoolean;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
@@ -22,10 +24,40 @@ public class OpflowRpcRequest implements Iterator, OpflowTimeout.Timeoutable {
     private final String routineId;
     private final long timeout;
     private final OpflowTimeout.Listener completeListener;
-    private OpflowTimeout.Watcher timeoutWatcher;
-    private long timestamp;
+    private final CompletableFuture<OpflowRpcResult> future;
+    private final ProgressListener progressListener;
+    private final Accumulator accumulator;
+    private final BlockingQueue<OpflowMessage> list;
+    private String watcherId;
+    private volatile long timestamp;
+    private final AtomicBoolean done = new AtomicBoolean(false);
+    
+    public interface ProgressListener {
+        public void handleEvent(OpflowRpcResult.Step step);
+    }
     
     public OpflowRpcRequest(Map<String, Object> options, final OpflowTimeout.Listener completeListener) {
+        this(options, completeListener, false, null);
+    }
+    
+    /**
+     * In the asynchronous mode, the messages are not queued: they are folded into
+     * the result as they arrive, and the future returned by getFuture() is
+     * completed by the thread which pushes the final message.
+     */
+    public OpflowRpcRequest(Map<String, Object> options, final OpflowTimeout.Listener completeListener,
+            boolean async, ProgressListener progressListener) {
+        if (async) {
+            this.future = new CompletableFuture<>();
+            this.progressListener = progressListener;
+            this.accumulator = new Accumulator(true);
+            this.list = null;
+        } else {
+            this.future = null;
+            this.progressListener = null;
+            this.accumulator = null;
+            this.list = new LinkedBlockingQueue<>();
+        }
         Map<String, Object> opts = OpflowUtil.ensureNotNull(options);
         this.requestId = OpflowUtil.getRequestId(opts);
         this.routineId = OpflowUtil.getRoutineId(opts);
@@ -40,27 +72,30 @@ public class OpflowRpcRequest implements Iterator, OpflowTimeout.Timeoutable {
         }
         logTracer = OpflowLogTracer.ROOT.branch("requestId", requestId, new OpflowLogTracer.OmitPingLogs(options));
         this.completeListener = completeListener;
+        checkTimestamp();
         if (Boolean.TRUE.equals(opts.get("watcherEnabled")) && completeListener != null && this.timeout > 0) {
-            timeoutWatcher = new OpflowTimeout.Watcher(requestId, this.timeout, new OpflowTimeout.Listener() {
+            // the deadline is counted from the latest push, as getTimestamp() is re-read when it is due
+            watcherId = OpflowUtil.getUUID();
+            OpflowTimeout.getSharedMonitor().add(watcherId, new OpflowTimeout.Timeoutable() {
                 @Override
-                public void handleEvent() {
-                    OpflowLogTracer logWatcher = null;
-                    if (logTracer.ready(LOG, "debug")) {
-                        logWatcher = logTracer.copy();
-                    }
-                    if (logWatcher != null && logWatcher.ready(LOG, "debug")) LOG.debug(logWatcher
+                public long getTimeout() {
+                    return timeout;
+                }
+
+                @Override
+                public long getTimestamp() {
+                    return timestamp;
+                }
+
+                @Override
+                public void raiseTimeout() {
+                    if (logTracer.ready(LOG, "debug")) LOG.debug(logTracer.copy()
                             .text("Request[${requestId}] timeout event has been raised")
                             .stringify());
-                    list.add(OpflowMessage.ERROR);
-                    if (logWatcher != null && logWatcher.ready(LOG, "debug")) LOG.debug(logWatcher
-                            .text("Request[${requestId}] raise completeListener (timeout)")
-                            .stringify());
-                    completeListener.handleEvent();
+                    push(OpflowMessage.ERROR);
                 }
             });
-            timeoutWatcher.start();
         }
-        checkTimestamp();
     }
 
     public String getRequestId() {
@@ -87,11 +122,15 @@ public class OpflowRpcRequest implements Iterator, OpflowTimeout.Timeoutable {
         this.push(OpflowMessage.ERROR);
     }
     
-    private final BlockingQueue<OpflowMessage> list = new LinkedBlockingQueue<>();
+    public CompletableFuture<OpflowRpcResult> getFuture() {
+        return future;
+    }
+    
     private OpflowMessage current = null;
     
     @Override
     public boolean hasNext() {
+        if (list == null) return false;
         try {
             this.current = list.take();
             if (this.current == OpflowMessage.EMPTY) return false;
@@ -110,12 +149,20 @@ public class OpflowRpcRequest implements Iterator, OpflowTimeout.Timeoutable {
     }
     
     public void push(OpflowMessage message) {
-        list.add(message);
-        if (timeoutWatcher != null) {
-            timeoutWatcher.check();
+        if (done.get()) return;
+        boolean finished = isDone(message);
+        if (finished && !done.compareAndSet(false, true)) return;
+        if (list != null) {
+            list.add(message);
+        } else if (message != OpflowMessage.ERROR) {
+            // the timeout marker is not part of the result, as in extractResult()
+            OpflowRpcResult.Step step = accumulator.add(message);
+            if (step != null && progressListener != null) {
+                progressListener.handleEvent(step);
+            }
         }
         checkTimestamp();
-        if(isDone(message)) {
+        if(finished) {
             OpflowLogTracer pushTrail = null;
             if (logTracer.ready(LOG, "debug")) {
                 pushTrail = logTracer.copy();
@@ -123,15 +170,20 @@ public class OpflowRpcRequest implements Iterator, OpflowTimeout.Timeoutable {
             if (pushTrail != null && pushTrail.ready(LOG, "debug")) LOG.debug(pushTrail
                     .text("Request[${requestId}] has completed/failed message")
                     .stringify());
-            list.add(OpflowMessage.EMPTY);
+            if (list != null) {
+                list.add(OpflowMessage.EMPTY);
+            }
             if (completeListener != null) {
                 if (pushTrail != null && pushTrail.ready(LOG, "debug")) LOG.debug(pushTrail
                         .text("Request[${requestId}] raises completeListener (completed)")
                         .stringify());
                 completeListener.handleEvent();
             }
-            if (timeoutWatcher != null) {
-                timeoutWatcher.close();
+            if (watcherId != null) {
+                OpflowTimeout.getSharedMonitor().remove(watcherId);
+            }
+            if (future != null) {
+                future.complete(accumulator.toResult(routineId, requestId));
             }
         }
     }
@@ -151,30 +203,55 @@ public class OpflowRpcRequest implements Iterator, OpflowTimeout.Timeoutable {
         if (extractTrail != null && extractTrail.ready(LOG, "trace")) LOG.trace(extractTrail
                 .text("Request[${requestId}] - extracting result")
                 .stringify());
-        String workerTag = null;
-        boolean failed = false;
-        byte[] error = null;
-        boolean completed = false;
-        byte[] value = null;
-        List<OpflowRpcResult.Step> steps = new LinkedList<>();
+        Accumulator result = new Accumulator(includeProgress);
         while(this.hasNext()) {
             OpflowMessage msg = this.next();
-            String status = getStatus(msg);
             if (extractTrail != null && extractTrail.ready(LOG, "trace")) LOG.trace(extractTrail
-                    .put("status", status)
+                    .put("status", getStatus(msg))
                     .text("Request[${requestId}] - examine message, status: ${status}")
                     .stringify());
-            if (status == null) continue;
+            result.add(msg);
+        }
+        if (extractTrail != null && extractTrail.ready(LOG, "trace")) LOG.trace(extractTrail
+                .text("Request[${requestId}] - extracting result has completed")
+                .stringify());
+        return result.toResult(routineId, requestId);
+    }
+    
+    private static class Accumulator {
+        private final boolean includeProgress;
+        private String workerTag = null;
+        private boolean failed = false;
+        private byte[] error = null;
+        private boolean completed = false;
+        private byte[] value = null;
+        private final List<OpflowRpcResult.Step> steps;
+        
+        Accumulator(boolean includeProgress) {
+            this.includeProgress = includeProgress;
+            this.steps = includeProgress ? new LinkedList<OpflowRpcResult.Step>() : null;
+        }
+        
+        /**
+         * Folds a message into the result, returns the progress step if any.
+         */
+        synchronized OpflowRpcResult.Step add(OpflowMessage msg) {
+            String status = getStatus(msg);
+            if (status == null) return null;
             switch (status) {
                 case "progress":
                     if (includeProgress) {
+                        OpflowRpcResult.Step step;
                         try {
                             int percent = OpflowJsontool.extractFieldAsInt(msg.getBodyAsString(), "percent");
-                            steps.add(new OpflowRpcResult.Step(percent));
+                            step = new OpflowRpcResult.Step(percent);
                         } catch (OpflowJsonTransformationException jse) {
-                            steps.add(new OpflowRpcResult.Step());
+                            step = new OpflowRpcResult.Step();
                         }
-                    }   break;
+                        steps.add(step);
+                        return step;
+                    }
+                    break;
                 case "failed":
                     workerTag = OpflowUtil.getMessageField(msg, "workerTag");
                     failed = true;
@@ -188,12 +265,12 @@ public class OpflowRpcRequest implements Iterator, OpflowTimeout.Timeoutable {
                 default:
                     break;
             }
+            return null;
+        }
+        
+        synchronized OpflowRpcResult toResult(String routineId, String requestId) {
+            return new OpflowRpcResult(routineId, requestId, workerTag, steps, failed, error, completed, value);
         }
-        if (extractTrail != null && extractTrail.ready(LOG, "trace")) LOG.trace(extractTrail
-                .text("Request[${requestId}] - extracting result has completed")
-                .stringify());
-        if (!includeProgress) steps = null;
-        return new OpflowRpcResult(routineId, requestId, workerTag, steps, failed, error, completed, value);
     }
     
     private static final List<String> STATUS = Arrays.asList(new String[] { "failed", "completed" });
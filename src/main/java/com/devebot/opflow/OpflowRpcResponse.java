@@ -22,15 +22,30 @@ public class OpflowRpcResponse {
     private final String replyQueueName;
     private final String requestId;
     private final String messageScope;
+    private final String bodyFormat;
     private final Boolean progressEnabled;
+    private final OpflowCodec codec;
+    private final int codecThreshold;
     
     public OpflowRpcResponse(Channel channel, AMQP.BasicProperties properties, String workerTag, String replyQueueName) {
+        this(channel, properties, workerTag, replyQueueName, null, 0);
+    }
+    
+    public OpflowRpcResponse(Channel channel, AMQP.BasicProperties properties, String workerTag, String replyQueueName,
+            OpflowCodec codec, int codecThreshold) {
         this.channel = channel;
+        this.codec = codec;
+        this.codecThreshold = codecThreshold;
         this.properties = properties;
         this.workerTag = workerTag;
         this.requestId = OpflowUtil.getRequestId(properties.getHeaders(), false);
         
-        logTracer = OpflowLogTracer.ROOT.branch("requestId", this.requestId, new OpflowLogTracer.OmitPingLogs(properties.getHeaders()));
+        // all of the logs are traces, skip the tracer when they are disabled
+        if (OpflowLogTracer.has(LOG, "trace")) {
+            logTracer = OpflowLogTracer.ROOT.branch("requestId", this.requestId, new OpflowLogTracer.OmitPingLogs(properties.getHeaders()));
+        } else {
+            logTracer = null;
+        }
         
         if (properties.getReplyTo() != null) {
             this.replyQueueName = properties.getReplyTo();
@@ -39,9 +54,10 @@ public class OpflowRpcResponse {
         }
         
         this.messageScope = OpflowUtil.getOptionField(properties.getHeaders(), "messageScope", false);
+        this.bodyFormat = OpflowUtil.getOptionField(properties.getHeaders(), "bodyFormat", false);
         this.progressEnabled = (Boolean) OpflowUtil.getOptionField(properties.getHeaders(), "progressEnabled", null);
         
-        if (logTracer.ready(LOG, "trace")) LOG.trace(logTracer
+        if (logTracer != null && logTracer.ready(LOG, "trace")) LOG.trace(logTracer
                 .put("workerTag", this.workerTag)
                 .put("replyTo", this.replyQueueName)
                 .put("progressEnabled", this.progressEnabled)
@@ -70,7 +86,7 @@ public class OpflowRpcResponse {
     }
     
     public void emitStarted(String content) {
-        if (logTracer.ready(LOG, "trace")) LOG.trace(logTracer
+        if (logTracer != null && logTracer.ready(LOG, "trace")) LOG.trace(logTracer
                 .put("body", content)
                 .text("Request[${requestId}] - emitStarted()")
                 .stringify());
@@ -79,8 +95,8 @@ public class OpflowRpcResponse {
     
     public void emitStarted(byte[] info) {
         if (info == null) info = new byte[0];
-        basicPublish(info, createProperties(properties, createHeaders("started")).build());
-        if (logTracer.ready(LOG, "trace")) LOG.trace(logTracer
+        basicPublish(info, createProperties(properties, createHeaders("started")));
+        if (logTracer != null && logTracer.ready(LOG, "trace")) LOG.trace(logTracer
                 .put("bodyLength", info.length)
                 .text("Request[${requestId}] - emitStarted()")
                 .stringify());
@@ -99,19 +115,19 @@ public class OpflowRpcResponse {
         String result;
         if (jsonData == null) {
             result = "{ \"percent\": " + percent + " }";
-            if (logTracer.ready(LOG, "trace")) LOG.trace(logTracer
+            if (logTracer != null && logTracer.ready(LOG, "trace")) LOG.trace(logTracer
                     .put("body", result)
                     .put("bodyLength", result.length())
                     .text("Request[${requestId}] - emitProgress()")
                     .stringify());
         } else {
             result = "{ \"percent\": " + percent + ", \"data\": " + jsonData + "}";
-            if (logTracer.ready(LOG, "trace")) LOG.trace(logTracer
+            if (logTracer != null && logTracer.ready(LOG, "trace")) LOG.trace(logTracer
                     .put("bodyLength", result.length())
                     .text("Request[${requestId}] - emitProgress()")
                     .stringify());
         }
-        basicPublish(OpflowUtil.getBytes(result), createProperties(properties, createHeaders("progress")).build());
+        basicPublish(OpflowUtil.getBytes(result), createProperties(properties, createHeaders("progress")));
     }
     
     public void emitFailed(String error) {
@@ -120,8 +136,8 @@ public class OpflowRpcResponse {
     
     public void emitFailed(byte[] error) {
         if (error == null) error = new byte[0];
-        basicPublish(error, createProperties(properties, createHeaders("failed", true)).build());
-        if (logTracer.ready(LOG, "trace")) LOG.trace(logTracer
+        basicPublish(error, createProperties(properties, createHeaders("failed", true)));
+        if (logTracer != null && logTracer.ready(LOG, "trace")) LOG.trace(logTracer
                 .put("bodyLength", error.length)
                 .text("Request[${requestId}] - emitFailed()")
                 .stringify());
@@ -133,8 +149,8 @@ public class OpflowRpcResponse {
 
     public void emitCompleted(byte[] result) {
         if (result == null) result = new byte[0];
-        basicPublish(result, createProperties(properties, createHeaders("completed", true)).build());
-        if (logTracer.ready(LOG, "trace")) LOG.trace(logTracer
+        basicPublish(result, createProperties(properties, createHeaders("completed", true)));
+        if (logTracer != null && logTracer.ready(LOG, "trace")) LOG.trace(logTracer
                 .put("bodyLength", result.length)
                 .text("Request[${requestId}] - emitCompleted()")
                 .stringify());
@@ -166,12 +182,16 @@ public class OpflowRpcResponse {
         if (finished) {
             headers.put("workerTag", this.workerTag);
         }
+        if (this.bodyFormat != null && "completed".equals(status)) {
+            headers.put("bodyFormat", this.bodyFormat);
+        }
         return headers;
     }
     
-    private void basicPublish(byte[] data, AMQP.BasicProperties replyProps) {
+    private void basicPublish(byte[] data, AMQP.BasicProperties.Builder propBuilder) {
         try {
-            channel.basicPublish("", replyQueueName, replyProps, data);
+            byte[] payload = OpflowCodec.encode(codec, codecThreshold, propBuilder, data);
+            channel.basicPublish("", replyQueueName, propBuilder.build(), payload);
         } catch (IOException exception) {
             throw new OpflowOperationException(exception);
         }
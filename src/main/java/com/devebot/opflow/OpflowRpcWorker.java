@@ -4,11 +4,19 @@ import com.devebot.opflow.exception.OpflowBootstrapException;
 import com.rabbitmq.client.AMQP;
 import com.rabbitmq.client.Channel;
 import java.io.IOException;
+import java.util.ArrayList;
 import java.util.HashMap;
-import java.util.LinkedList;
+import java.util.LinkedHashSet;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
@@ -18,6 +26,7 @@ import org.slf4j.LoggerFactory;
  */
 public class OpflowRpcWorker implements AutoCloseable {
     private final static Logger LOG = LoggerFactory.getLogger(OpflowRpcWorker.class);
+    private final static long DISPATCH_SHUTDOWN_TIMEOUT = 10000;
     
     private final String rpcWorkerId;
     private final OpflowLogTracer logTracer;
@@ -28,6 +37,12 @@ public class OpflowRpcWorker implements AutoCloseable {
     
     private final String operatorName;
     private final String responseName;
+    private final int concurrency;
+    private final int prefetch;
+    private final int dispatchPoolSize;
+    private final ExecutorService dispatchPool;
+    private final Semaphore dispatchPermits;
+    private final boolean manualAckEnabled;
     
     public OpflowRpcWorker(Map<String, Object> params) throws OpflowBootstrapException {
         params = OpflowUtil.ensureNotNull(params);
@@ -52,6 +67,39 @@ public class OpflowRpcWorker implements AutoCloseable {
             throw new OpflowBootstrapException("operatorName should be different with responseName");
         }
         
+        if (params.get("concurrency") instanceof Integer && (Integer) params.get("concurrency") > 0) {
+            concurrency = (Integer) params.get("concurrency");
+        } else {
+            concurrency = 1;
+        }
+        
+        if (params.get("prefetch") instanceof Integer && (Integer) params.get("prefetch") > 0) {
+            prefetch = (Integer) params.get("prefetch");
+        } else {
+            prefetch = 0;
+        }
+        
+        if (params.get("dispatchPoolSize") instanceof Integer && (Integer) params.get("dispatchPoolSize") > 0) {
+            dispatchPoolSize = (Integer) params.get("dispatchPoolSize");
+            ExecutorService pool = OpflowEngine.newExecutorService((String) params.get("dispatchPoolType"), dispatchPoolSize);
+            dispatchPool = (pool != null) ? pool : Executors.newFixedThreadPool(dispatchPoolSize, new ThreadFactory() {
+                private final AtomicInteger counter = new AtomicInteger();
+                @Override
+                public Thread newThread(Runnable runnable) {
+                    Thread thread = new Thread(runnable, "opflow-rpc-worker-" + rpcWorkerId + "-" + counter.incrementAndGet());
+                    thread.setDaemon(true);
+                    return thread;
+                }
+            });
+            dispatchPermits = new Semaphore(dispatchPoolSize);
+        } else {
+            dispatchPoolSize = 0;
+            dispatchPool = null;
+            dispatchPermits = null;
+        }
+        
+        manualAckEnabled = Boolean.TRUE.equals(params.get("manualAckEnabled"));
+        
         engine = new OpflowEngine(brokerParams);
         executor = new OpflowExecutor(engine);
         
@@ -66,6 +114,10 @@ public class OpflowRpcWorker implements AutoCloseable {
         if (logTracer.ready(LOG, "info")) LOG.info(logTracer
                 .put("operatorName", operatorName)
                 .put("responseName", responseName)
+                .put("concurrency", concurrency)
+                .put("prefetch", prefetch)
+                .put("dispatchPoolSize", dispatchPoolSize)
+                .put("manualAckEnabled", manualAckEnabled)
                 .tags("RpcWorker.new() parameters")
                 .text("RpcWorker[${rpcWorkerId}].new() operatorName: '${operatorName}', responseName: '${responseName}'")
                 .stringify());
@@ -80,28 +132,20 @@ public class OpflowRpcWorker implements AutoCloseable {
     }
 
     private OpflowEngine.ConsumerInfo consumerInfo;
-    private List<Middleware> middlewares = new LinkedList<>();
+    private final List<OpflowEngine.ConsumerInfo> consumerInfos = new ArrayList<>();
+    private final List<Middleware> middlewares = new CopyOnWriteArrayList<>();
+    private volatile DispatchTable dispatchTable = new DispatchTable(middlewares);
     
     public OpflowEngine.ConsumerInfo process(final OpflowRpcListener listener) {
         return process(TRUE, listener);
     }
 
     public OpflowEngine.ConsumerInfo process(final String routineId, final OpflowRpcListener listener) {
-        return process(new Checker() {
-            @Override
-            public boolean match(String originRoutineId) {
-                return routineId != null && routineId.equals(originRoutineId);
-            }
-        }, listener);
+        return process(new RoutineChecker(routineId != null ? new String[] { routineId } : new String[0]), listener);
     };
     
     public OpflowEngine.ConsumerInfo process(final String[] routineIds, final OpflowRpcListener listener) {
-        return process(new Checker() {
-            @Override
-            public boolean match(String originRoutineId) {
-                return routineIds != null && OpflowUtil.arrayContains(routineIds, originRoutineId);
-            }
-        }, listener);
+        return process(new RoutineChecker(routineIds != null ? routineIds.clone() : new String[0]), listener);
     };
     
     public OpflowEngine.ConsumerInfo process(final Set<String> routineIds, final OpflowRpcListener listener) {
@@ -121,10 +165,13 @@ public class OpflowRpcWorker implements AutoCloseable {
                 .stringify());
         
         if (checker != null && listener != null) {
-            middlewares.add(new Middleware(checker, listener));
+            synchronized (middlewares) {
+                middlewares.add(new Middleware(checker, listener));
+                dispatchTable = new DispatchTable(middlewares);
+            }
         }
         if (consumerInfo != null) return consumerInfo;
-        consumerInfo = engine.consume(new OpflowListener() {
+        final OpflowListener dispatcher = new OpflowListener() {
             @Override
             public boolean processMessage(
                     byte[] body,
@@ -134,7 +181,8 @@ public class OpflowRpcWorker implements AutoCloseable {
                     String workerTag
             ) throws IOException {
                 OpflowMessage request = new OpflowMessage(body, properties.getHeaders());
-                OpflowRpcResponse response = new OpflowRpcResponse(channel, properties, workerTag, queueName);
+                OpflowRpcResponse response = new OpflowRpcResponse(channel, properties, workerTag, queueName,
+                        engine.getCodec(), engine.getCodecThreshold());
                 String routineId = OpflowUtil.getRoutineId(properties.getHeaders(), false);
                 String requestId = OpflowUtil.getRequestId(properties.getHeaders(), false);
 
@@ -148,8 +196,8 @@ public class OpflowRpcWorker implements AutoCloseable {
                         .text("Request[${requestId}] - Consumer[${consumerId}] receives a new RPC request")
                         .stringify());
                 int count = 0;
-                for(Middleware middleware : middlewares) {
-                    if (middleware.getChecker().match(routineId)) {
+                for(Middleware middleware : dispatchTable.lookup(routineId)) {
+                    if (middleware.isIndexed() || middleware.getChecker().match(routineId)) {
                         count++;
                         exporter.incRpcInvocationEvent("rpc_worker", rpcWorkerId, routineId, "process");
                         Boolean nextAction = middleware.getListener().processMessage(request, response);
@@ -161,15 +209,38 @@ public class OpflowRpcWorker implements AutoCloseable {
                         .stringify());
                 return count > 0;
             }
-        }, OpflowUtil.buildMap(new OpflowUtil.MapListener() {
-            @Override
-            public void transform(Map<String, Object> opts) {
-                opts.put("consumerId", _consumerId);
-                opts.put("queueName", operatorName);
-                opts.put("replyTo", responseName);
-                opts.put("binding", Boolean.TRUE);
-            }
-        }).toMap());
+        };
+        // each consumer has its own channel (and basicQos) when there are more than one
+        for (int i=0; i<concurrency; i++) {
+            final String consumerId = (i == 0) ? _consumerId : _consumerId + "-" + i;
+            OpflowEngine.ConsumerInfo info = engine.consume(dispatcher, OpflowUtil.buildMap(new OpflowUtil.MapListener() {
+                @Override
+                public void transform(Map<String, Object> opts) {
+                    opts.put("consumerId", consumerId);
+                    opts.put("queueName", operatorName);
+                    opts.put("replyTo", responseName);
+                    opts.put("binding", Boolean.TRUE);
+                    if (concurrency > 1) {
+                        opts.put("forceNewChannel", Boolean.TRUE);
+                    }
+                    if (prefetch > 0) {
+                        opts.put("prefetch", prefetch);
+                    }
+                    if (dispatchPool != null) {
+                        opts.put("parallelism", dispatchPoolSize);
+                        opts.put("dispatcher", dispatchPool);
+                        opts.put("dispatchPermits", dispatchPermits);
+                    }
+                    // the dispatched messages are acked when their handler has finished,
+                    // the others only when the manual acks are enabled (as the subscribers)
+                    if (dispatchPool != null || manualAckEnabled) {
+                        opts.put("autoAck", Boolean.FALSE);
+                    }
+                }
+            }).toMap());
+            consumerInfos.add(info);
+        }
+        consumerInfo = consumerInfos.get(0);
         if (logProcess.ready(LOG, "info")) LOG.info(logProcess
                 .text("Consumer[${consumerId}] - process() has completed")
                 .stringify());
@@ -193,7 +264,17 @@ public class OpflowRpcWorker implements AutoCloseable {
                 .text("RpcWorker[${rpcWorkerId}].close()")
                 .stringify());
         if (engine != null) {
-            engine.cancelConsumer(consumerInfo);
+            for (OpflowEngine.ConsumerInfo info : consumerInfos) {
+                engine.cancelConsumer(info);
+            }
+            if (dispatchPool != null) {
+                dispatchPool.shutdown();
+                try {
+                    dispatchPool.awaitTermination(DISPATCH_SHUTDOWN_TIMEOUT, TimeUnit.MILLISECONDS);
+                } catch (InterruptedException ie) {
+                    Thread.currentThread().interrupt();
+                }
+            }
             engine.close();
         }
         if (logTracer.ready(LOG, "info")) LOG.info(logTracer
@@ -237,12 +318,73 @@ public class OpflowRpcWorker implements AutoCloseable {
         public OpflowRpcListener getListener() {
             return listener;
         }
+        
+        private boolean isIndexed() {
+            return checker instanceof RoutineChecker;
+        }
     }
     
     public interface Checker {
         public boolean match(String routineId);
     }
     
+    /**
+     * Matches a fixed list of routineIds, these middlewares are indexed by the
+     * DispatchTable instead of being scanned.
+     */
+    private static class RoutineChecker implements Checker {
+        private final String[] routineIds;
+
+        RoutineChecker(String[] routineIds) {
+            this.routineIds = routineIds;
+        }
+
+        @Override
+        public boolean match(String routineId) {
+            return OpflowUtil.arrayContains(routineIds, routineId);
+        }
+    }
+    
+    /**
+     * An immutable snapshot of the middlewares, rebuilt whenever a middleware
+     * is added. Each indexed routineId is mapped to its ordered chain, which
+     * also contains the scanned middlewares (Set, custom Checker) in their
+     * place; the other routineIds only walk the scanned middlewares.
+     */
+    private static class DispatchTable {
+        private final Map<String, Middleware[]> chains = new HashMap<>();
+        private final Middleware[] scanned;
+
+        DispatchTable(List<Middleware> middlewares) {
+            List<Middleware> _scanned = new ArrayList<>();
+            Set<String> indexedIds = new LinkedHashSet<>();
+            for (Middleware middleware : middlewares) {
+                if (middleware.isIndexed()) {
+                    for (String routineId : ((RoutineChecker) middleware.getChecker()).routineIds) {
+                        if (routineId != null) indexedIds.add(routineId);
+                    }
+                } else {
+                    _scanned.add(middleware);
+                }
+            }
+            scanned = _scanned.toArray(new Middleware[_scanned.size()]);
+            for (String routineId : indexedIds) {
+                List<Middleware> chain = new ArrayList<>();
+                for (Middleware middleware : middlewares) {
+                    if (!middleware.isIndexed() || middleware.getChecker().match(routineId)) {
+                        chain.add(middleware);
+                    }
+                }
+                chains.put(routineId, chain.toArray(new Middleware[chain.size()]));
+            }
+        }
+
+        Middleware[] lookup(String routineId) {
+            Middleware[] chain = (routineId != null) ? chains.get(routineId) : null;
+            return (chain != null) ? chain : scanned;
+        }
+    }
+    
     private final Checker TRUE = new Checker() {
         @Override
         public boolean match(String routineId) {
@@ -4,11 +4,18 @@ import com.devebot.opflow.annotation.OpflowTargetRoutine;
 import com.devebot.opflow.exception.OpflowBootstrapException;
 import com.devebot.opflow.exception.OpflowInterceptionException;
 import com.google.gson.JsonSyntaxException;
+import com.google.gson.TypeAdapter;
 import java.io.IOException;
 import java.lang.annotation.Annotation;
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.lang.invoke.WrongMethodTypeException;
 import java.lang.reflect.InvocationTargetException;
 import java.lang.reflect.Method;
 import java.lang.reflect.Modifier;
+import java.lang.reflect.ParameterizedType;
+import java.lang.reflect.Type;
 import java.util.Arrays;
 import java.util.Collection;
 import java.util.HashMap;
@@ -16,6 +23,17 @@ import java.util.HashSet;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.CompletionStage;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.BiConsumer;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
@@ -244,6 +262,7 @@ public class OpflowServerlet implements AutoCloseable {
         if (configurer != null) configurer.close();
         if (rpcWorker != null) rpcWorker.close();
         if (subscriber != null) subscriber.close();
+        if (instantiator != null) instantiator.close();
         
         if (logTracer.ready(LOG, "info")) LOG.info(logTracer
                 .text("Serverlet[${serverletId}].close() has completed!")
@@ -310,9 +329,10 @@ public class OpflowServerlet implements AutoCloseable {
         private final OpflowPubsubHandler subscriber;
         private final OpflowPubsubListener subListener;
         private final Set<String> routineIds = new HashSet<>();
-        private final Map<String, Method> methodRef = new HashMap<>();
-        private final Map<String, Object> targetRef = new HashMap<>();
+        private final Map<String, Routine> routines = new ConcurrentHashMap<>();
         private final Map<String, String> methodOfAlias = new HashMap<>();
+        private final String instanceId;
+        private ExecutorService futureExecutor;
         private boolean processing = false;
         
         public Instantiator(OpflowRpcWorker worker, OpflowPubsubHandler subscriber) throws OpflowBootstrapException {
@@ -325,6 +345,7 @@ public class OpflowServerlet implements AutoCloseable {
             }
             options = OpflowUtil.ensureNotNull(options);
             final String instanceId = options.getOrDefault("instanceId", OpflowUtil.getLogID()).toString();
+            this.instanceId = instanceId;
             this.logTracer = OpflowLogTracer.ROOT.branch("instantiatorId", instanceId);
             this.rpcWorker = worker;
             this.rpcListener = new OpflowRpcListener() {
@@ -332,28 +353,21 @@ public class OpflowServerlet implements AutoCloseable {
                 public Boolean processMessage(final OpflowMessage message, final OpflowRpcResponse response) throws IOException {
                     final String requestId = OpflowUtil.getRequestId(message.getInfo());
                     final String routineId = OpflowUtil.getRoutineId(message.getInfo());
-                    final String methodId = methodOfAlias.getOrDefault(routineId, routineId);
+                    final Routine routine = routines.get(routineId);
                     final OpflowLogTracer listenerTrail = logTracer.branch("requestId", requestId, new OpflowLogTracer.OmitPingLogs(message.getInfo()));
                     if (listenerTrail.ready(LOG, "info")) LOG.info(listenerTrail
                             .put("routineId", routineId)
-                            .put("methodId", methodId)
+                            .put("methodId", (routine != null) ? routine.methodId : null)
                             .text("Request[${requestId}] - Receives new method call")
                             .stringify());
-                    Method method = methodRef.get(methodId);
-                    Object target = targetRef.get(methodId);
                     try {
-                        Method origin = target.getClass().getMethod(method.getName(), method.getParameterTypes());
-                        OpflowTargetRoutine routine = extractMethodInfo(origin);
-                        if (routine != null && routine.enabled() == false) {
-                            throw new UnsupportedOperationException("Method " + origin.toString() + " is disabled");
+                        if (routine == null) {
+                            throw new NoSuchMethodException("routineId[" + routineId + "] is not found");
                         }
+                        routine.checkEnabled();
                         
-                        String json = message.getBodyAsString();
-                        if (listenerTrail.ready(LOG, "trace")) LOG.trace(listenerTrail
-                                .put("arguments", json)
-                                .text("Request[${requestId}] - Method arguments in json string")
-                                .stringify());
-                        Object[] args = OpflowJsontool.toObjectArray(json, method.getParameterTypes());
+                        final String bodyFormat = OpflowUtil.getMessageField(message, "bodyFormat");
+                        Object[] args = extractArguments(message, bodyFormat, routine, listenerTrail);
                         
                         Object returnValue;
                         
@@ -406,19 +420,44 @@ public class OpflowServerlet implements AutoCloseable {
                                 }
                             }).toMap());
                         } else {
-                            returnValue = method.invoke(target, args);
+                            returnValue = routine.invoke(args);
                         }
                         
-                        String result = OpflowJsontool.toString(returnValue);
-                        if (listenerTrail.ready(LOG, "trace")) LOG.trace(listenerTrail
-                                .put("return", OpflowUtil.truncate(result))
-                                .text("Request[${requestId}] - Return the output of the method")
-                                .stringify());
-                        response.emitCompleted(result);
+                        // the asynchronous methods respond when their futures are done
+                        if (routine.asynchronous && returnValue instanceof CompletionStage) {
+                            ((CompletionStage<?>) returnValue).whenComplete(new BiConsumer<Object, Throwable>() {
+                                @Override
+                                public void accept(Object value, Throwable failure) {
+                                    complete(response, routine, bodyFormat, value, failure, listenerTrail);
+                                }
+                            });
+                            return null;
+                        }
+                        if (routine.asynchronous && returnValue instanceof Future) {
+                            final Future<?> future = (Future<?>) returnValue;
+                            // a plain Future blocks on get(), which must not hold the dispatch thread
+                            getFutureExecutor().execute(new Runnable() {
+                                @Override
+                                public void run() {
+                                    Object value = null;
+                                    Throwable failure = null;
+                                    try {
+                                        value = future.get();
+                                    } catch (ExecutionException exception) {
+                                        failure = exception.getCause();
+                                    } catch (InterruptedException exception) {
+                                        Thread.currentThread().interrupt();
+                                        failure = exception;
+                                    } catch (CancellationException exception) {
+                                        failure = exception;
+                                    }
+                                    complete(response, routine, bodyFormat, value, failure, listenerTrail);
+                                }
+                            });
+                            return null;
+                        }
                         
-                        if (listenerTrail.ready(LOG, "info")) LOG.info(listenerTrail
-                            .text("Request[${requestId}] - Method call has completed")
-                            .stringify());
+                        emitResult(response, routine, bodyFormat, returnValue, listenerTrail);
                     } catch (JsonSyntaxException error) {
                         error.getStackTrace();
                         response.emitFailed(OpflowUtil.buildMap()
@@ -438,17 +477,11 @@ public class OpflowServerlet implements AutoCloseable {
                                 .put("message", ex.getMessage())
                                 .toString());
                     } catch (InvocationTargetException ex) {
-                        Throwable cause = (Exception) ex.getCause();
+                        Throwable cause = ex.getCause();
                         if (cause == null) {
                             cause = ex;
                         }
-                        cause.getStackTrace();
-                        response.emitFailed(OpflowUtil.buildMap()
-                                .put("exceptionClass", cause.getClass().getName())
-                                .put("exceptionPayload", OpflowJsontool.toString(cause))
-                                .put("type", cause.getClass().getName())
-                                .put("message", cause.getMessage())
-                                .toString());
+                        emitFailure(response, cause);
                     } catch (UnsupportedOperationException ex) {
                         ex.getStackTrace();
                         response.emitFailed(OpflowUtil.buildMap()
@@ -472,30 +505,23 @@ public class OpflowServerlet implements AutoCloseable {
                 public void processMessage(OpflowMessage message) throws IOException {
                     final String requestId = OpflowUtil.getRequestId(message.getInfo());
                     final String routineId = OpflowUtil.getRoutineId(message.getInfo());
-                    final String methodId = methodOfAlias.getOrDefault(routineId, routineId);
+                    final Routine routine = routines.get(routineId);
                     final OpflowLogTracer listenerTrail = logTracer.branch("requestId", requestId, new OpflowLogTracer.OmitPingLogs(message.getInfo()));
                     if (listenerTrail.ready(LOG, "info")) LOG.info(listenerTrail
                             .put("routineId", routineId)
-                            .put("methodId", methodId)
+                            .put("methodId", (routine != null) ? routine.methodId : null)
                             .text("Request[${requestId}] - Receives new method call [${routineId}]")
                             .stringify());
-                    Method method = methodRef.get(methodId);
-                    Object target = targetRef.get(methodId);
                     try {
-                        Method origin = target.getClass().getMethod(method.getName(), method.getParameterTypes());
-                        OpflowTargetRoutine routine = extractMethodInfo(origin);
-                        if (routine != null && routine.enabled() == false) {
-                            throw new UnsupportedOperationException("Method " + origin.toString() + " is disabled");
+                        if (routine == null) {
+                            throw new NoSuchMethodException("routineId[" + routineId + "] is not found");
                         }
+                        routine.checkEnabled();
                         
-                        String json = message.getBodyAsString();
-                        if (listenerTrail.ready(LOG, "trace")) LOG.trace(listenerTrail
-                                .put("arguments", json)
-                                .text("Request[${requestId}] - Method arguments in json string")
-                                .stringify());
-                        Object[] args = OpflowJsontool.toObjectArray(json, method.getParameterTypes());
+                        final String bodyFormat = OpflowUtil.getMessageField(message, "bodyFormat");
+                        Object[] args = extractArguments(message, bodyFormat, routine, listenerTrail);
                         
-                        method.invoke(target, args);
+                        routine.invoke(args);
                         
                         if (listenerTrail.ready(LOG, "info")) LOG.info(listenerTrail
                                 .text("Request[${requestId}] - Method call has completed")
@@ -516,6 +542,96 @@ public class OpflowServerlet implements AutoCloseable {
             }
         }
         
+        private void emitResult(OpflowRpcResponse response, Routine routine, String bodyFormat, Object returnValue,
+                OpflowLogTracer listenerTrail) {
+            if (OpflowBinarytool.FORMAT.equals(bodyFormat)) {
+                // the value is returned in the format of the request
+                byte[] result = OpflowBinarytool.toBytes(returnValue, routine.returnType);
+                if (listenerTrail.ready(LOG, "trace")) LOG.trace(listenerTrail
+                        .put("bodyLength", result.length)
+                        .text("Request[${requestId}] - Return the output of the method in binary")
+                        .stringify());
+                response.emitCompleted(result);
+            } else {
+                String result = routine.toJson(returnValue);
+                if (listenerTrail.ready(LOG, "trace")) LOG.trace(listenerTrail
+                        .put("return", OpflowUtil.truncate(result))
+                        .text("Request[${requestId}] - Return the output of the method")
+                        .stringify());
+                response.emitCompleted(result);
+            }
+            
+            if (listenerTrail.ready(LOG, "info")) LOG.info(listenerTrail
+                .text("Request[${requestId}] - Method call has completed")
+                .stringify());
+        }
+        
+        private void emitFailure(OpflowRpcResponse response, Throwable cause) {
+            cause.getStackTrace();
+            response.emitFailed(OpflowUtil.buildMap()
+                    .put("exceptionClass", cause.getClass().getName())
+                    .put("exceptionPayload", OpflowJsontool.toString(cause))
+                    .put("type", cause.getClass().getName())
+                    .put("message", cause.getMessage())
+                    .toString());
+        }
+        
+        /**
+         * Responds with the outcome of the future of an asynchronous method.
+         */
+        private void complete(OpflowRpcResponse response, Routine routine, String bodyFormat, Object value, Throwable failure,
+                OpflowLogTracer listenerTrail) {
+            if (failure instanceof CompletionException && failure.getCause() != null) {
+                failure = failure.getCause();
+            }
+            if (failure != null) {
+                emitFailure(response, failure);
+                return;
+            }
+            try {
+                emitResult(response, routine, bodyFormat, value, listenerTrail);
+            } catch (RuntimeException exception) {
+                emitFailure(response, exception);
+            }
+        }
+        
+        private synchronized ExecutorService getFutureExecutor() {
+            if (futureExecutor == null) {
+                futureExecutor = Executors.newCachedThreadPool(new ThreadFactory() {
+                    private final AtomicInteger counter = new AtomicInteger();
+                    @Override
+                    public Thread newThread(Runnable runnable) {
+                        Thread thread = new Thread(runnable, "opflow-instantiator-" + instanceId + "-future-" + counter.incrementAndGet());
+                        thread.setDaemon(true);
+                        return thread;
+                    }
+                });
+            }
+            return futureExecutor;
+        }
+        
+        public synchronized void close() {
+            if (futureExecutor != null) {
+                futureExecutor.shutdown();
+                futureExecutor = null;
+            }
+        }
+        
+        private Object[] extractArguments(OpflowMessage message, String bodyFormat, Routine routine,
+                OpflowLogTracer listenerTrail) {
+            if (OpflowBinarytool.FORMAT.equals(bodyFormat)) {
+                return routine.getBinarySchema().toObjectArray(message.getBody());
+            }
+            if (bodyFormat != null) {
+                throw new UnsupportedOperationException("Unsupported bodyFormat: " + bodyFormat);
+            }
+            if (listenerTrail.ready(LOG, "trace")) LOG.trace(listenerTrail
+                    .put("arguments", message.getBodyAsString())
+                    .text("Request[${requestId}] - Method arguments in json string")
+                    .stringify());
+            return OpflowJsontool.toObjectArray(message.getBody(), routine.parameterAdapters);
+        }
+        
         public final void process() {
             if (!processing) {
                 if (rpcWorker != null) {
@@ -576,13 +692,28 @@ public class OpflowServerlet implements AutoCloseable {
                                 .tags("attach-method-to-RpcWorker-listener")
                                 .text("Attach the method[" + methodId + "] to the listener of RpcWorker[${rpcWorkerId}]")
                                 .stringify());
-                        if (!routineIds.add(methodId) && !method.equals(methodRef.get(methodId))) {
+                        Routine existing = routines.get(methodId);
+                        if (!routineIds.add(methodId) && (existing == null || !method.equals(existing.method))) {
                             throw new OpflowInterceptionException("routineId[" + methodId + "] is conflicted");
                         }
-                        methodRef.put(methodId, method);
-                        targetRef.put(methodId, target);
+                        Routine routine = new Routine(methodId, method, target);
+                        routines.put(methodId, routine);
+                        // the compact form is accepted whatever the setting of the commanders
+                        String compactId = OpflowUtil.getCompactRoutineId(methodId);
+                        Routine owner = routines.get(compactId);
+                        if (owner != null && !owner.methodId.equals(methodId)) {
+                            throw new OpflowInterceptionException("compact routineId[" + compactId + "] of [" + methodId + "]" +
+                                    " is conflicted with routineId[" + owner.methodId + "]");
+                        }
+                        routineIds.add(compactId);
+                        routines.put(compactId, routine);
                     }
                 }
+                // an alias shares the descriptor of its method, the dispatch is a single lookup
+                for (Map.Entry<String, String> entry : methodOfAlias.entrySet()) {
+                    Routine routine = routines.get(entry.getValue());
+                    if (routine != null) routines.put(entry.getKey(), routine);
+                }
             } catch (InstantiationException except) {
                 if (logTracer.ready(LOG, "error")) LOG.error(logTracer
                         .put("errorType", except.getClass().getName())
@@ -615,7 +746,7 @@ public class OpflowServerlet implements AutoCloseable {
             process();
         }
         
-        private OpflowTargetRoutine extractMethodInfo(Method method) {
+        private static OpflowTargetRoutine extractMethodInfo(Method method) {
             if (method.isAnnotationPresent(OpflowTargetRoutine.class)) {
                 Annotation annotation = method.getAnnotation(OpflowTargetRoutine.class);
                 OpflowTargetRoutine routine = (OpflowTargetRoutine) annotation;
@@ -623,6 +754,149 @@ public class OpflowServerlet implements AutoCloseable {
             }
             return null;
         }
+        
+        /**
+         * The immutable descriptor of a routine, resolved once by instantiateType():
+         * the invoker is a MethodHandle bound to the target, which takes the
+         * arguments as an array and returns the boxed value (null for void).
+         */
+        private static class Routine {
+            private final static MethodType INVOKER_TYPE = MethodType.methodType(Object.class, Object[].class);
+            private final String methodId;
+            private final Method method;
+            private final MethodHandle invoker;
+            private final Exception failure;
+            private final boolean enabled;
+            private final String disabledMessage;
+            private final TypeAdapter<?>[] parameterAdapters;
+            private final Class<?>[] parameterClasses;
+            private final boolean asynchronous;
+            private final Type returnType;
+            private final Class<?> returnClass;
+            private final TypeAdapter<?> returnAdapter;
+            private volatile OpflowBinarytool.Schema binarySchema;
+            
+            Routine(String methodId, Method method, Object target) {
+                this.methodId = methodId;
+                this.method = method;
+                
+                // the annotation of the implementation is the one which enables the method
+                Method origin = null;
+                Exception _failure = null;
+                try {
+                    origin = target.getClass().getMethod(method.getName(), method.getParameterTypes());
+                } catch (NoSuchMethodException | SecurityException exception) {
+                    _failure = exception;
+                }
+                OpflowTargetRoutine routine = (origin != null) ? extractMethodInfo(origin) : null;
+                this.enabled = routine == null || routine.enabled();
+                this.disabledMessage = "Method " + ((origin != null) ? origin : method).toString() + " is disabled";
+                
+                MethodHandle _invoker = null;
+                if (_failure == null) {
+                    try {
+                        MethodHandle handle = MethodHandles.lookup().unreflect(method);
+                        if (!Modifier.isStatic(method.getModifiers())) handle = handle.bindTo(target);
+                        _invoker = handle.asSpreader(Object[].class, method.getParameterTypes().length).asType(INVOKER_TYPE);
+                    } catch (IllegalAccessException exception) {
+                        _failure = exception;
+                    }
+                }
+                this.invoker = _invoker;
+                this.failure = _failure;
+                
+                Type[] parameterTypes = method.getGenericParameterTypes();
+                this.parameterAdapters = new TypeAdapter<?>[parameterTypes.length];
+                for (int i=0; i<parameterTypes.length; i++) {
+                    this.parameterAdapters[i] = OpflowJsontool.getTypeAdapter(parameterTypes[i]);
+                }
+                this.parameterClasses = method.getParameterTypes();
+                // the value of a future is serialized against its type argument
+                Class<?> rawType = method.getReturnType();
+                this.asynchronous = CompletionStage.class.isAssignableFrom(rawType) || Future.class.isAssignableFrom(rawType);
+                this.returnType = asynchronous ? getFutureResultType(method.getGenericReturnType()) : method.getGenericReturnType();
+                this.returnClass = asynchronous ? getRawClass(returnType) : rawType;
+                this.returnAdapter = (returnClass != null && returnClass != void.class && returnClass != Void.class) ?
+                        OpflowJsontool.getTypeAdapter(returnType) : null;
+            }
+            
+            /**
+             * The schema is built by the first binary request, a method whose
+             * parameters have no binary coder fails its binary requests only.
+             */
+            OpflowBinarytool.Schema getBinarySchema() {
+                OpflowBinarytool.Schema schema = binarySchema;
+                if (schema == null) {
+                    schema = OpflowBinarytool.getSchema(method.getGenericParameterTypes());
+                    binarySchema = schema;
+                }
+                return schema;
+            }
+            
+            void checkEnabled() throws NoSuchMethodException, IllegalAccessException {
+                if (failure instanceof NoSuchMethodException) throw (NoSuchMethodException) failure;
+                if (failure instanceof IllegalAccessException) throw (IllegalAccessException) failure;
+                if (failure instanceof SecurityException) throw (SecurityException) failure;
+                if (!enabled) throw new UnsupportedOperationException(disabledMessage);
+            }
+            
+            /**
+             * The arguments are checked as Method.invoke() does, a mismatch
+             * is an IllegalArgumentException instead of a failure of the target.
+             */
+            Object invoke(Object[] args) throws InvocationTargetException {
+                checkArguments(args);
+                try {
+                    return (Object) invoker.invokeExact(args);
+                } catch (WrongMethodTypeException exception) {
+                    throw new IllegalArgumentException(exception);
+                } catch (Throwable exception) {
+                    throw new InvocationTargetException(exception);
+                }
+            }
+            
+            private void checkArguments(Object[] args) {
+                int length = (args != null) ? args.length : 0;
+                if (length != parameterClasses.length) {
+                    throw new IllegalArgumentException("wrong number of arguments: " + length + " instead of " + parameterClasses.length);
+                }
+                for (int i=0; i<length; i++) {
+                    Class<?> parameterType = parameterClasses[i];
+                    if (args[i] == null) {
+                        if (parameterType.isPrimitive()) {
+                            throw new IllegalArgumentException("argument #" + i + " must not be null");
+                        }
+                    } else if (!MethodType.methodType(parameterType).wrap().returnType().isInstance(args[i])) {
+                        throw new IllegalArgumentException("argument #" + i + " is not an instance of " + parameterType.getName());
+                    }
+                }
+            }
+            
+            /**
+             * The adapter of the declared type is used when the value has this
+             * exact type, the subclasses are serialized by their runtime types.
+             */
+            String toJson(Object value) {
+                if (value != null && returnAdapter != null && value.getClass() == returnClass) {
+                    return OpflowJsontool.toString(value, returnAdapter);
+                }
+                return OpflowJsontool.toString(value);
+            }
+            
+            private static Type getFutureResultType(Type genericType) {
+                if (genericType instanceof ParameterizedType) {
+                    Type resultType = ((ParameterizedType) genericType).getActualTypeArguments()[0];
+                    if (resultType instanceof Class || resultType instanceof ParameterizedType) return resultType;
+                }
+                return Object.class;
+            }
+            
+            private static Class<?> getRawClass(Type type) {
+                if (type instanceof Class) return (Class<?>) type;
+                if (type instanceof ParameterizedType) return (Class<?>) ((ParameterizedType) type).getRawType();
+                return null;
+            }
+        }
     }
     
     public static class OpflowRpcCheckerWorker extends OpflowRpcChecker {
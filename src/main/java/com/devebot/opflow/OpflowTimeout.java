@@ -1,8 +1,11 @@
 package com.devebot.opflow;
 
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
 import java.util.Map;
-import java.util.Timer;
-import java.util.TimerTask;
 import java.util.concurrent.locks.Condition;
 import java.util.concurrent.locks.Lock;
 import java.util.concurrent.locks.ReentrantLock;
@@ -85,76 +88,92 @@ public class OpflowTimeout {
         void raiseTimeout();
     }
     
+    /**
+     * A hashed timing wheel: the tasks are put into buckets by the tick of their
+     * deadline, so that adding and removing a task are O(1) and each tick only
+     * examines the tasks of one bucket. The interval is the tick duration, a
+     * task is expired at most one interval after its deadline. When a task is
+     * due, its deadline is computed again from getTimestamp(), so a task which
+     * has been touched in the meantime is rescheduled instead of expired.
+     */
     public static class Monitor {
         private final static Logger LOG = LoggerFactory.getLogger(Monitor.class);
+        private final static int WHEEL_SIZE = 512;
         private final OpflowLogTracer logTracer;
         private long timeout;
         private final String monitorId;
-        private final Map<String, ? extends Timeoutable> tasks;
         private final int interval;
-        private final Timer timer = new Timer(true);
-        private final TimerTask timerTask = new TimerTask() {
-            @Override
-            public void run() {
-                if (tasks == null || tasks.isEmpty()) return;
-                long current = OpflowUtil.getCurrentTime();
-                OpflowLogTracer logTask = logTracer.branch("timestamp", current);
-                if (logTask.ready(LOG, "debug")) LOG.debug(logTask
-                        .put("taskListSize", tasks.size())
-                        .put("threadCount", Thread.activeCount())
-                        .text("Monitor[${monitorId}].run(), tasks: ${taskListSize}, threads: ${threadCount}")
-                        .stringify());
-                for (String key : tasks.keySet()) {
-                    if (logTask.ready(LOG, "trace")) LOG.trace(logTask
-                            .put("taskId", key)
-                            .text("Monitor[${monitorId}].run() examine the task[${taskId}]")
-                            .stringify());
-                    Timeoutable task = tasks.get(key);
-                    if (task == null) continue;
-                    long _timeout = task.getTimeout();
-                    if (_timeout <= 0) _timeout = timeout;
-                    if (logTask.ready(LOG, "trace")) LOG.trace(logTask
-                            .put("taskId", key)
-                            .put("monitorTimeout", timeout)
-                            .put("taskTimeout", task.getTimeout())
-                            .put("timeout", _timeout)
-                            .text("Monitor[${monitorId}].run() task[${taskId}]'s timeout: ${taskTimeout} | ${monitorTimeout} ~ ${timeout}")
-                            .stringify());
-                    if (_timeout > 0) {
-                        long diff = current - task.getTimestamp();
-                        if (diff > _timeout) {
-                            tasks.remove(key);
-                            task.raiseTimeout();
-                            if (logTask.ready(LOG, "trace")) LOG.trace(logTask
-                                    .put("taskId", key)
-                                    .put("diff", diff)
-                                    .put("timeout", _timeout)
-                                    .text("Monitor[${monitorId}].run() task[${taskId}] is timeout (diff: ${diff} > ${timeout}), rejected")
-                                    .stringify());
-                        } else {
-                            if (logTask.ready(LOG, "trace")) LOG.trace(logTask
-                                    .put("taskId", key)
-                                    .text("Monitor[${monitorId}].run() task[${taskId}] is good, keep running")
-                                    .stringify());
-                        }
-                    }
-                }
+        private final Map<String, ? extends Timeoutable> tasks;
+        private final Entry[] wheel = new Entry[WHEEL_SIZE];
+        private final Map<String, Entry> entries = new HashMap<>();
+        private long startTime;
+        private long tick = 0;
+        private boolean running = false;
+        private Thread worker;
+        
+        private static class Entry {
+            private final String taskId;
+            private final Timeoutable task;
+            private long targetTick;
+            private Entry prev;
+            private Entry next;
+            
+            Entry(String taskId, Timeoutable task) {
+                this.taskId = taskId;
+                this.task = task;
             }
-        };
+        }
+        
+        public Monitor() {
+            this(10);
+        }
+        
+        public Monitor(int interval) {
+            this(interval, 1000l);
+        }
+        
+        public Monitor(int interval, long timeout) {
+            this(interval, timeout, null);
+        }
         
+        public Monitor(int interval, long timeout, String monitorId) {
+            this(interval, timeout, monitorId, null);
+        }
+        
+        /**
+         * @deprecated the monitor synchronizes the wheel with the given map on
+         * each tick, use add()/remove() instead
+         */
+        @Deprecated
         public Monitor(Map<String, ? extends Timeoutable> tasks) {
             this(tasks, 2000);
         }
         
+        /**
+         * @deprecated use Monitor(interval) with add()/remove() instead
+         */
+        @Deprecated
         public Monitor(Map<String, ? extends Timeoutable> tasks, int interval) {
             this(tasks, interval, 1000l);
         }
         
+        /**
+         * @deprecated use Monitor(interval, timeout) with add()/remove() instead
+         */
+        @Deprecated
         public Monitor(Map<String, ? extends Timeoutable> tasks, int interval, long timeout) {
             this(tasks, interval, timeout, null);
         }
         
+        /**
+         * @deprecated use Monitor(interval, timeout, monitorId) with add()/remove() instead
+         */
+        @Deprecated
         public Monitor(Map<String, ? extends Timeoutable> tasks, int interval, long timeout, String monitorId) {
+            this(interval, timeout, monitorId, tasks);
+        }
+        
+        private Monitor(int interval, long timeout, String monitorId, Map<String, ? extends Timeoutable> tasks) {
             this.tasks = tasks;
             this.interval = interval;
             this.timeout = timeout;
@@ -167,12 +186,78 @@ public class OpflowTimeout {
                     .stringify());
         }
         
+        public void add(String taskId, Timeoutable task) {
+            if (taskId == null || task == null) return;
+            long _timeout = getTimeout(task);
+            if (_timeout <= 0) return;
+            synchronized (this) {
+                if (!running) return;
+                addEntry(taskId, task, _timeout);
+            }
+        }
+        
+        private void addEntry(String taskId, Timeoutable task, long _timeout) {
+            if (entries.isEmpty()) {
+                // the wheel is empty, restart the ticks from now
+                startTime = OpflowUtil.getCurrentTime();
+                tick = 0;
+                notifyAll();
+            }
+            Entry entry = new Entry(taskId, task);
+            Entry replaced = entries.put(taskId, entry);
+            if (replaced != null) unlink(replaced);
+            schedule(entry, task.getTimestamp() + _timeout);
+        }
+        
+        /**
+         * The tasks of a legacy map are added to the wheel when they appear
+         * and removed from it when they disappear from the map.
+         */
+        private void synchronizeTasks() {
+            for (Map.Entry<String, ? extends Timeoutable> task : tasks.entrySet()) {
+                if (task.getValue() == null || entries.containsKey(task.getKey())) continue;
+                long _timeout = getTimeout(task.getValue());
+                if (_timeout > 0) addEntry(task.getKey(), task.getValue(), _timeout);
+            }
+            Iterator<Entry> iter = entries.values().iterator();
+            while (iter.hasNext()) {
+                Entry entry = iter.next();
+                if (!tasks.containsKey(entry.taskId)) {
+                    unlink(entry);
+                    iter.remove();
+                }
+            }
+        }
+        
+        public void remove(String taskId) {
+            if (taskId == null) return;
+            synchronized (this) {
+                Entry entry = entries.remove(taskId);
+                if (entry != null) unlink(entry);
+            }
+        }
+        
+        public synchronized int size() {
+            return entries.size();
+        }
+        
         public void start() {
             if (logTracer.ready(LOG, "debug")) LOG.debug(logTracer
                     .text("Monitor[${monitorId}].start()")
                     .stringify());
             if (interval > 0) {
-                timer.scheduleAtFixedRate(timerTask, 0, interval);
+                synchronized (this) {
+                    if (running) return;
+                    running = true;
+                    worker = new Thread(new Runnable() {
+                        @Override
+                        public void run() {
+                            loop();
+                        }
+                    }, "opflow-timeout-monitor-" + monitorId);
+                    worker.setDaemon(true);
+                    worker.start();
+                }
                 if (logTracer.ready(LOG, "debug")) LOG.debug(logTracer
                         .put("interval", interval)
                         .text("Monitor[${monitorId}] has been started with interval: ${interval}")
@@ -189,11 +274,125 @@ public class OpflowTimeout {
             if (logTracer.ready(LOG, "debug")) LOG.debug(logTracer
                     .text("Monitor[${monitorId}].stop()")
                     .stringify());
-            timer.cancel();
-            timer.purge();
+            synchronized (this) {
+                running = false;
+                entries.clear();
+                Arrays.fill(wheel, null);
+                notifyAll();
+            }
+        }
+        
+        private long getTimeout(Timeoutable task) {
+            long _timeout = task.getTimeout();
+            if (_timeout <= 0) _timeout = timeout;
+            return _timeout;
+        }
+        
+        private void schedule(Entry entry, long deadline) {
+            long target = (deadline - startTime) / interval;
+            entry.targetTick = Math.max(target, tick);
+            int index = (int) (entry.targetTick & (WHEEL_SIZE - 1));
+            entry.prev = null;
+            entry.next = wheel[index];
+            if (wheel[index] != null) wheel[index].prev = entry;
+            wheel[index] = entry;
+        }
+        
+        private void unlink(Entry entry) {
+            int index = (int) (entry.targetTick & (WHEEL_SIZE - 1));
+            if (entry.prev != null) {
+                entry.prev.next = entry.next;
+            } else if (wheel[index] == entry) {
+                wheel[index] = entry.next;
+            }
+            if (entry.next != null) entry.next.prev = entry.prev;
+            entry.prev = null;
+            entry.next = null;
+        }
+        
+        private void loop() {
+            while (true) {
+                List<Entry> expired;
+                synchronized (this) {
+                    try {
+                        while (running && entries.isEmpty() && tasks == null) wait();
+                        if (!running) return;
+                        if (tasks != null) {
+                            synchronizeTasks();
+                            if (entries.isEmpty()) {
+                                wait(interval);
+                                continue;
+                            }
+                        }
+                        long current = OpflowUtil.getCurrentTime();
+                        long tickTime = startTime + (tick + 1) * interval;
+                        if (current < tickTime) {
+                            wait(tickTime - current);
+                            continue;
+                        }
+                        expired = expire(current);
+                        tick++;
+                    } catch (InterruptedException ie) {
+                        return;
+                    }
+                }
+                for (Entry entry : expired) {
+                    // raised outside the lock, the listeners remove their tasks
+                    entry.task.raiseTimeout();
+                }
+            }
+        }
+        
+        private List<Entry> expire(long current) {
+            int index = (int) (tick & (WHEEL_SIZE - 1));
+            Entry entry = wheel[index];
+            wheel[index] = null;
+            List<Entry> expired = new ArrayList<>();
+            while (entry != null) {
+                Entry next = entry.next;
+                entry.prev = null;
+                entry.next = null;
+                if (entry.targetTick > tick) {
+                    schedule(entry, startTime + entry.targetTick * interval);
+                } else {
+                    long deadline = entry.task.getTimestamp() + getTimeout(entry.task);
+                    if (deadline > current) {
+                        schedule(entry, deadline);
+                    } else {
+                        entries.remove(entry.taskId);
+                        if (tasks != null) tasks.remove(entry.taskId);
+                        expired.add(entry);
+                        if (logTracer.ready(LOG, "trace")) LOG.trace(logTracer
+                                .put("taskId", entry.taskId)
+                                .put("diff", current - entry.task.getTimestamp())
+                                .text("Monitor[${monitorId}] task[${taskId}] is timeout (diff: ${diff}), rejected")
+                                .stringify());
+                    }
+                }
+                entry = next;
+            }
+            return expired;
+        }
+    }
+    
+    private static Monitor sharedMonitor;
+    
+    /**
+     * Returns the monitor shared by all the requests which watch their own
+     * timeout, so that the number of threads does not depend on the requests.
+     */
+    public static synchronized Monitor getSharedMonitor() {
+        if (sharedMonitor == null) {
+            sharedMonitor = new Monitor(10, 0, "shared");
+            sharedMonitor.start();
         }
+        return sharedMonitor;
     }
     
+    /**
+     * @deprecated runs a thread for each task, use getSharedMonitor() instead
+     */
+    @Deprecated
     public static class Watcher extends Thread {
         private final static Logger LOG = LoggerFactory.getLogger(Watcher.class);
         private final OpflowLogTracer logTracer;
@@ -4,7 +4,6 @@ import java.io.UnsupportedEncodingException;
 import java.lang.reflect.Array;
 import java.lang.reflect.Method;
 import java.net.URL;
-import java.nio.ByteBuffer;
 import java.util.Arrays;
 import java.util.Collections;
 import java.util.HashMap;
@@ -14,8 +13,8 @@ import java.util.Map;
 import java.util.UUID;
 import java.util.ArrayList;
 import java.util.Date;
+import java.util.concurrent.ThreadLocalRandom;
 import java.util.regex.Pattern;
-import javax.xml.bind.DatatypeConverter;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import com.devebot.opflow.exception.OpflowOperationException;
@@ -101,13 +100,18 @@ public class OpflowUtil {
         return (new Date()).getTime();
     }
     
+    /**
+     * The identifiers only need to be unique, not unpredictable, so they are
+     * generated from ThreadLocalRandom instead of the SecureRandom behind
+     * UUID.randomUUID(). The version/variant bits of a random UUID are kept.
+     */
     public static String getUUID() {
-        return UUID.randomUUID().toString();
+        return new UUID(randomMostSigBits(), randomLeastSigBits()).toString();
     }
     
     public static String getLogID() {
-        if (!OPFLOW_BASE64UUID) getUUID();
-        return convertUUIDToBase64(UUID.randomUUID());
+        if (!OPFLOW_BASE64UUID) return getUUID();
+        return encodeBase64(randomMostSigBits(), randomLeastSigBits());
     }
     
     public static String getLogID(String uuid) {
@@ -117,13 +121,41 @@ public class OpflowUtil {
     }
     
     private static String convertUUIDToBase64(UUID uuid) {
-        // Create byte[] for base64 from uuid
-        byte[] src = ByteBuffer.wrap(new byte[16])
-                .putLong(uuid.getMostSignificantBits())
-                .putLong(uuid.getLeastSignificantBits())
-                .array();
-        // Encode to Base64 and remove trailing ==
-        return DatatypeConverter.printBase64Binary(src).substring(0, 22);
+        return encodeBase64(uuid.getMostSignificantBits(), uuid.getLeastSignificantBits());
+    }
+    
+    private static long randomMostSigBits() {
+        return (ThreadLocalRandom.current().nextLong() & ~0xF000L) | 0x4000L;
+    }
+    
+    private static long randomLeastSigBits() {
+        return (ThreadLocalRandom.current().nextLong() & 0x3FFFFFFFFFFFFFFFL) | 0x8000000000000000L;
+    }
+    
+    private static final char[] BASE64_CHARS = "ABCDEFGHIJKLMNOPQRSTUVWXYZabcdefghijklmnopqrstuvwxyz0123456789+/".toCharArray();
+    
+    private static String encodeBase64(long msb, long lsb) {
+        // the Base64 form of the 16 bytes without the trailing ==
+        char[] out = new char[22];
+        int pos = 0;
+        int i = 0;
+        while (i < 15) {
+            int triple = (getByte(msb, lsb, i) << 16) | (getByte(msb, lsb, i + 1) << 8) | getByte(msb, lsb, i + 2);
+            out[pos++] = BASE64_CHARS[(triple >>> 18) & 0x3F];
+            out[pos++] = BASE64_CHARS[(triple >>> 12) & 0x3F];
+            out[pos++] = BASE64_CHARS[(triple >>> 6) & 0x3F];
+            out[pos++] = BASE64_CHARS[triple & 0x3F];
+            i += 3;
+        }
+        int last = getByte(msb, lsb, 15);
+        out[pos++] = BASE64_CHARS[(last >>> 2) & 0x3F];
+        out[pos] = BASE64_CHARS[(last << 4) & 0x3F];
+        return new String(out);
+    }
+    
+    private static int getByte(long msb, long lsb, int index) {
+        long word = (index < 8) ? msb : lsb;
+        return (int) (word >>> (56 - 8 * (index & 7))) & 0xFF;
     }
     
     public static byte[] getBytes(String data) {
@@ -280,8 +312,11 @@ public class OpflowUtil {
     }
     
     public static String getOptionField(Map<String, Object> options, String fieldName, boolean uuidIfNotFound) {
-        Object value = getOptionField(options, fieldName, uuidIfNotFound ? getLogID() : null);
-        return value != null ? value.toString() : null;
+        Object value = getOptionField(options, fieldName, null);
+        if (value == null) {
+            return uuidIfNotFound ? getLogID() : null;
+        }
+        return value.toString();
     }
     
     public static Object getOptionField(Map<String, Object> options, String fieldName, Object defval) {
@@ -405,6 +440,26 @@ public class OpflowUtil {
         return method.toString();
     }
     
+    public final static String COMPACT_ROUTINE_ID_PREFIX = "~";
+    
+    /**
+     * Returns the short form of a method signature: the 64-bit FNV-1a hash of
+     * its UTF-16 chars in hexadecimal. The commander and the serverlet compute
+     * it from the same signature, so that it needs no negotiation.
+     */
+    public static String getCompactRoutineId(String methodSignature) {
+        long hash = 0xcbf29ce484222325L;
+        for (int i=0; i<methodSignature.length(); i++) {
+            char c = methodSignature.charAt(i);
+            hash = (hash ^ (c & 0xff)) * 0x100000001b3L;
+            hash = (hash ^ (c >>> 8)) * 0x100000001b3L;
+        }
+        String hex = Long.toHexString(hash);
+        StringBuilder sb = new StringBuilder(17).append(COMPACT_ROUTINE_ID_PREFIX);
+        for (int i=hex.length(); i<16; i++) sb.append('0');
+        return sb.append(hex).toString();
+    }
+    
     public static String maskPassword(String password) {
         if (password == null) return null;
         char[] charArray = new char[password.length()];
@@ -14,4 +14,7 @@ import java.lang.annotation.Target;
 public @interface OpflowSourceRoutine {
     String alias() default "";
     boolean isAsync() default false;
+    String format() default "";
+    long cacheTtl() default 0;
+    int cacheLimit() default 0;
 }
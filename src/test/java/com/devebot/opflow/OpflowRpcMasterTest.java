@@ -0,0 +1,180 @@
+package com.devebot.opflow;
+
+import com.rabbitmq.client.AMQP;
+import com.rabbitmq.client.AddressResolver;
+import com.rabbitmq.client.Channel;
+import com.rabbitmq.client.Connection;
+import com.rabbitmq.client.ConnectionFactory;
+import com.rabbitmq.client.impl.AMQImpl;
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.atomic.AtomicInteger;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import static org.junit.Assert.*;
+
+/**
+ * Checks the direct reply-to requests of the RpcMaster against a mocked
+ * broker, whose channels record their invocations.
+ *
+ * @author drupalex
+ */
+public class OpflowRpcMasterTest {
+    private MockConnectionFactory factory;
+    private OpflowRpcMaster rpcMaster;
+
+    @Before
+    public void setUp() throws Exception {
+        factory = new MockConnectionFactory();
+        rpcMaster = new OpflowRpcMaster(OpflowUtil.buildMap()
+                .put("rpcMasterId", "rpc-master-test")
+                .put("connectionFactory", factory)
+                .put("host", "localhost")
+                .put("exchangeName", "tdd-opflow-exchange")
+                .put("routingKey", "tdd-opflow-rpc")
+                .put("responseName", "tdd-opflow-response")
+                .put("directReplyEnabled", Boolean.TRUE)
+                .put("monitorEnabled", Boolean.FALSE)
+                .toMap());
+    }
+
+    @After
+    public void tearDown() {
+        if (rpcMaster != null) rpcMaster.close();
+    }
+
+    @Test
+    public void testDirectReplyRequestIsPublishedOnTheConsumerChannel() {
+        rpcMaster.request("fibonacci", "{}");
+
+        Invocation consume = factory.findFirst("basicConsume");
+        assertNotNull("the reply consumer must be registered", consume);
+        assertEquals(OpflowEngine.DIRECT_REPLY_TO, consume.args[0]);
+        assertEquals("the pseudo-queue must be consumed with autoAck", Boolean.TRUE, consume.args[1]);
+
+        Invocation publish = factory.findFirst("basicPublish");
+        assertNotNull("the request must be published", publish);
+        assertSame("the request must be published on the channel of its reply consumer", consume.channel, publish.channel);
+        assertEquals("tdd-opflow-exchange", publish.args[0]);
+        assertEquals("tdd-opflow-rpc", publish.args[1]);
+
+        AMQP.BasicProperties properties = (AMQP.BasicProperties) publish.args[publish.args.length - 2];
+        assertEquals(OpflowEngine.DIRECT_REPLY_TO, properties.getReplyTo());
+        assertNotNull(properties.getCorrelationId());
+
+        assertNull("no callback queue must be declared", factory.findFirst("queueDeclare"));
+    }
+
+    private static class Invocation {
+        private final Channel channel;
+        private final String name;
+        private final Object[] args;
+
+        Invocation(Channel channel, String name, Object[] args) {
+            this.channel = channel;
+            this.name = name;
+            this.args = (args != null) ? args : new Object[0];
+        }
+    }
+
+    /**
+     * Creates the connections and the channels as proxies, the invocations
+     * of the channels are recorded in their order.
+     */
+    private static class MockConnectionFactory extends ConnectionFactory {
+        private final List<Invocation> invocations = Collections.synchronizedList(new ArrayList<Invocation>());
+        private final AtomicInteger channelNumber = new AtomicInteger();
+        private final AtomicInteger consumerNumber = new AtomicInteger();
+
+        @Override
+        public Connection newConnection(ExecutorService executor, AddressResolver addressResolver, String clientProvidedName) {
+            return (Connection) Proxy.newProxyInstance(getClass().getClassLoader(), new Class<?>[] { Connection.class },
+                    new InvocationHandler() {
+                private String id;
+
+                @Override
+                public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+                    switch (method.getName()) {
+                        case "createChannel":
+                            return newChannel((Connection) proxy);
+                        case "isOpen":
+                            return Boolean.TRUE;
+                        case "getId":
+                            return id;
+                        case "setId":
+                            id = (String) args[0];
+                            return null;
+                        default:
+                            return getDefaultValue(proxy, method, args);
+                    }
+                }
+            });
+        }
+
+        private Channel newChannel(final Connection connection) {
+            final int number = channelNumber.incrementAndGet();
+            return (Channel) Proxy.newProxyInstance(getClass().getClassLoader(), new Class<?>[] { Channel.class },
+                    new InvocationHandler() {
+                @Override
+                public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+                    if (method.getDeclaringClass() != Object.class) {
+                        invocations.add(new Invocation((Channel) proxy, method.getName(), args));
+                    }
+                    switch (method.getName()) {
+                        case "getChannelNumber":
+                            return number;
+                        case "getConnection":
+                            return connection;
+                        case "isOpen":
+                            return Boolean.TRUE;
+                        case "queueDeclare":
+                            String queueName = (args != null && args.length > 0) ? (String) args[0] : "amq.gen-" + number;
+                            return new AMQImpl.Queue.DeclareOk(queueName, 0, 0);
+                        case "queueDeclarePassive":
+                            return new AMQImpl.Queue.DeclareOk((String) args[0], 0, 0);
+                        case "exchangeDeclare":
+                        case "exchangeDeclarePassive":
+                            return new AMQImpl.Exchange.DeclareOk();
+                        case "basicConsume":
+                            return "consumer-" + consumerNumber.incrementAndGet();
+                        default:
+                            return getDefaultValue(proxy, method, args);
+                    }
+                }
+            });
+        }
+
+        Invocation findFirst(String name) {
+            synchronized (invocations) {
+                for (Invocation invocation : invocations) {
+                    if (invocation.name.equals(name)) return invocation;
+                }
+            }
+            return null;
+        }
+
+        private static Object getDefaultValue(Object proxy, Method method, Object[] args) {
+            switch (method.getName()) {
+                case "equals":
+                    return proxy == args[0];
+                case "hashCode":
+                    return System.identityHashCode(proxy);
+                case "toString":
+                    return "Mock" + method.getDeclaringClass().getSimpleName() + "@" + System.identityHashCode(proxy);
+            }
+            Class<?> type = method.getReturnType();
+            if (type == boolean.class) return Boolean.FALSE;
+            if (type == int.class) return 0;
+            if (type == long.class) return 0L;
+            if (type == Map.class) return Collections.emptyMap();
+            return null;
+        }
+    }
+}